@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.FileInputStream;
+import java.util.Properties;
+
+/**
+ * Compares counting the triples of a few graphs out of many with the graph
+ * variable filtered after the lookup against bound with VALUES before it,
+ * as size(Resource...), getStatements and hasStatement now do.
+ *
+ */
+@State(Scope.Benchmark)
+public class ContextFilterBenchmark {
+
+    private static final int GRAPHS = 50;
+    private static final int TRIPLES_PER_GRAPH = 2000;
+
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+    private Resource[] graphs;
+    private Resource[] counted;
+
+    @Setup
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileInputStream("gradle.properties"));
+        String host = props.getProperty("mlHost");
+        int port = Integer.parseInt(props.getProperty("mlRestPort"));
+        String user = props.getProperty("mlUsername");
+        String pass = props.getProperty("mlPassword");
+
+        rep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, pass));
+        rep.initialize();
+        conn = rep.getConnection();
+
+        ValueFactory f = conn.getValueFactory();
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        graphs = new Resource[GRAPHS];
+        for (int g = 0; g < GRAPHS; g++) {
+            graphs[g] = f.createIRI("http://marklogic.com/test/benchmark/graph" + g);
+            for (int i = 0; i < TRIPLES_PER_GRAPH; i++) {
+                conn.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i), graphs[g]);
+            }
+        }
+        conn.sync();
+        counted = new Resource[] { graphs[0], graphs[GRAPHS / 2] };
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        conn.clear(graphs);
+        conn.close();
+        rep.shutDown();
+    }
+
+    @Benchmark
+    public long countWithFilter() throws Exception {
+        String query = "SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } filter (?g = (IRI(\""
+                + counted[0].stringValue() + "\"),IRI(\"" + counted[1].stringValue() + "\")) ) }";
+        try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+            return ((Literal) result.next().getValue("ct")).longValue();
+        }
+    }
+
+    @Benchmark
+    public long countWithValues() throws Exception {
+        return conn.size(counted);
+    }
+
+}
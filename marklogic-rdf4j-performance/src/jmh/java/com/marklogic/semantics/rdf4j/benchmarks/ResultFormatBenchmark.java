@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.client.SPARQLJSONTupleParser;
+import com.marklogic.semantics.rdf4j.query.MarkLogicTupleQuery;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
+import org.eclipse.rdf4j.query.resultio.helpers.QueryResultCollector;
+import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Compares the tuple result formats MarkLogic can send on a wide result of
+ * IRIs: decoding a recorded response, and the full query round trip.
+ *
+ * decode also reports the bytes it decoded as the secondary result
+ * decode:bytes, so its score over the decode score is the payload size
+ * of the format.
+ *
+ */
+@State(Scope.Benchmark)
+public class ResultFormatBenchmark {
+
+    private static final int SUBJECTS = 5000;
+    private static final String QUERY = "SELECT ?s ?p ?o WHERE { GRAPH <http://marklogic.com/test/benchmark/formats> { ?s ?p ?o } }";
+
+    @Param({ "JSON", "SPARQL", "TSV", "CSV" })
+    public String format;
+
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+    private Resource graph;
+    private TupleQueryResultFormat resultFormat;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileInputStream("gradle.properties"));
+        String host = props.getProperty("mlHost");
+        int port = Integer.parseInt(props.getProperty("mlRestPort"));
+        String user = props.getProperty("mlUsername");
+        String pass = props.getProperty("mlPassword");
+
+        rep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, pass));
+        rep.initialize();
+        conn = rep.getConnection();
+
+        ValueFactory f = conn.getValueFactory();
+        graph = f.createIRI("http://marklogic.com/test/benchmark/formats");
+        IRI knows = f.createIRI("http://example.org/ontology/knows");
+        for (int i = 0; i < SUBJECTS; i++) {
+            conn.add(f.createIRI("http://example.org/people/" + i), knows, f.createIRI("http://example.org/people/" + (i + 1) % SUBJECTS), graph);
+        }
+        conn.sync();
+
+        switch (format) {
+            case "SPARQL":
+                resultFormat = TupleQueryResultFormat.SPARQL;
+                break;
+            case "TSV":
+                resultFormat = TupleQueryResultFormat.TSV;
+                break;
+            case "CSV":
+                resultFormat = TupleQueryResultFormat.CSV;
+                break;
+            default:
+                resultFormat = TupleQueryResultFormat.JSON;
+        }
+        InputStreamHandle handle = new InputStreamHandle().withMimetype(resultFormat.getDefaultMIMEType());
+        try (InputStream in = rep.getMarkLogicClient().getClient().performSPARQLQuery(QUERY, new SPARQLQueryBindingSet(), handle, 1, -1, null, false, null)) {
+            response = IOUtils.toByteArray(in);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        conn.clear(graph);
+        conn.close();
+        rep.shutDown();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Payload {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+
+    }
+
+    @Benchmark
+    public long decode(Payload payload) throws Exception {
+        TupleQueryResultParser parser = resultFormat.equals(TupleQueryResultFormat.JSON)
+                ? new SPARQLJSONTupleParser(conn.getValueFactory())
+                : QueryResultIO.createTupleParser(resultFormat, conn.getValueFactory());
+        long[] hash = { 0 };
+        parser.setQueryResultHandler(new QueryResultCollector() {
+            @Override
+            public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+                for (String name : bindingSet.getBindingNames()) {
+                    hash[0] += bindingSet.getValue(name).hashCode();
+                }
+            }
+        });
+        parser.parseQueryResult(new ByteArrayInputStream(response));
+        payload.bytes += response.length;
+        return hash[0];
+    }
+
+    @Benchmark
+    public long query() throws Exception {
+        MarkLogicTupleQuery query = conn.prepareTupleQuery(QUERY);
+        query.setResultFormat(resultFormat);
+        long rows = 0;
+        try (TupleQueryResult result = query.evaluate()) {
+            while (result.hasNext()) {
+                result.next();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+}
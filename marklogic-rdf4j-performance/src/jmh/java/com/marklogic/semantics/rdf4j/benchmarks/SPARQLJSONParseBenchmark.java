@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.client.SPARQLJSONTupleParser;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
+import org.eclipse.rdf4j.query.resultio.helpers.QueryResultCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compares parsing a SPARQL JSON SELECT response with the generic RDF4J
+ * parser against the streaming parser with lazily decoded rows, reading
+ * one column of each row and reading all of them.
+ *
+ * Set -DsparqlJsonResponse=file to parse a response recorded from the
+ * server; otherwise a response of ROWS rows of IRIs, plain, typed and
+ * language tagged literals is generated.
+ *
+ */
+@State(Scope.Benchmark)
+public class SPARQLJSONParseBenchmark {
+
+    private static final int ROWS = 20000;
+
+    private final ValueFactory f = SimpleValueFactory.getInstance();
+
+    private byte[] response;
+    private String firstColumn;
+
+    @Setup
+    public void setUp() throws Exception {
+        String recorded = System.getProperty("sparqlJsonResponse");
+        if (recorded != null) {
+            response = Files.readAllBytes(Paths.get(recorded));
+        } else {
+            response = generate().getBytes(StandardCharsets.UTF_8);
+        }
+        QueryResultCollector collector = new QueryResultCollector();
+        TupleQueryResultParser parser = QueryResultIO.createTupleParser(TupleQueryResultFormat.JSON, f);
+        parser.setQueryResultHandler(collector);
+        parser.parseQueryResult(new ByteArrayInputStream(response));
+        firstColumn = collector.getBindingNames().get(0);
+    }
+
+    @Benchmark
+    public long rdf4jOneColumn() throws Exception {
+        return parse(QueryResultIO.createTupleParser(TupleQueryResultFormat.JSON, f), false);
+    }
+
+    @Benchmark
+    public long streamingOneColumn() throws Exception {
+        return parse(new SPARQLJSONTupleParser(f), false);
+    }
+
+    @Benchmark
+    public long rdf4jAllColumns() throws Exception {
+        return parse(QueryResultIO.createTupleParser(TupleQueryResultFormat.JSON, f), true);
+    }
+
+    @Benchmark
+    public long streamingAllColumns() throws Exception {
+        return parse(new SPARQLJSONTupleParser(f), true);
+    }
+
+    private long parse(TupleQueryResultParser parser, boolean allColumns) throws Exception {
+        long[] hash = { 0 };
+        parser.setQueryResultHandler(new QueryResultCollector() {
+            @Override
+            public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+                if (allColumns) {
+                    for (String name : bindingSet.getBindingNames()) {
+                        hash[0] += bindingSet.getValue(name).hashCode();
+                    }
+                } else {
+                    Value value = bindingSet.getValue(firstColumn);
+                    hash[0] += value == null ? 0 : value.hashCode();
+                }
+            }
+        });
+        parser.parseQueryResult(new ByteArrayInputStream(response));
+        return hash[0];
+    }
+
+    private static String generate() {
+        StringBuilder sb = new StringBuilder("{\"head\":{\"vars\":[\"s\",\"p\",\"o\",\"label\",\"age\"]},\"results\":{\"bindings\":[");
+        for (int i = 0; i < ROWS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"s\":{\"type\":\"uri\",\"value\":\"http://example.org/people/").append(i).append("\"},")
+                    .append("\"p\":{\"type\":\"uri\",\"value\":\"http://example.org/ontology/knows\"},")
+                    .append("\"o\":{\"type\":\"uri\",\"value\":\"http://example.org/people/").append(i % 100).append("\"},")
+                    .append("\"label\":{\"type\":\"literal\",\"value\":\"person ").append(i).append("\",\"xml:lang\":\"en\"},")
+                    .append("\"age\":{\"type\":\"literal\",\"value\":\"").append(i % 90)
+                    .append("\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#integer\"}}");
+        }
+        return sb.append("]}}").toString();
+    }
+
+}
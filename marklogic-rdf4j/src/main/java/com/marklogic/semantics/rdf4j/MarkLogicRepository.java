@@ -24,17 +24,25 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.JmxMetricsRecorder;
+import com.marklogic.semantics.rdf4j.client.MetricsRecorder;
+import com.marklogic.semantics.rdf4j.client.RequestListener;
+import com.marklogic.semantics.rdf4j.utils.HttpClientSettings;
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.base.AbstractRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *
@@ -60,10 +68,20 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
 
     private boolean quadMode;
 
+    private TupleQueryResultFormat tupleResultFormat = TupleQueryResultFormat.JSON;
+    private RDFFormat graphResultFormat = RDFFormat.NTRIPLES;
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
+    private final List<RequestListener> requestListeners = new CopyOnWriteArrayList<>();
+
     private ValueFactory f;
 
     private DatabaseClient databaseClient;
 
+    // false if the database client was handed in, then it is the caller's to release
+    private boolean ownsDatabaseClient = true;
+
+    private HttpClientSettings httpClientSettings;
+
     private Util util = Util.getInstance();
 
 
@@ -83,7 +101,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.user = cred[0];
         this.password = cred[1];
         this.auth = "DIGEST";
-        this.client = getMarkLogicClient();
+        this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
+        this.client = new MarkLogicClient(databaseClient);
     }
 
     /**
@@ -171,6 +190,7 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         super();
         this.f = SimpleValueFactory.getInstance();
         this.databaseClient = databaseClient;
+        this.ownsDatabaseClient = false;
         this.quadMode = true;
         this.host = databaseClient.getHost();
         this.port = databaseClient.getPort();
@@ -209,16 +229,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     {
         if(this.databaseClient == null || this.client == null || this.databaseClient.getClientImplementation() == null)
         {
-            if(this.securityContext == null)
-            {
-                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
-                this.client = new MarkLogicClient(databaseClient);
-            }
-            else
-            {
-                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext);
-                this.client = new MarkLogicClient(databaseClient);
-            }
+            this.databaseClient = null;
+            getDatabaseClient();
         }
     }
 
@@ -230,8 +242,13 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
      */
     @Override
     @Deprecated
-    protected void shutDownInternal() throws RepositoryException {
-        client.release();
+    protected synchronized void shutDownInternal() throws RepositoryException {
+        // connections share the database client, so it is released once here
+        if (ownsDatabaseClient && databaseClient != null) {
+            client.stopTimer();
+            client.release();
+            databaseClient = null;
+        }
     }
 
     /**
@@ -272,10 +289,10 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
      * Returns a MarkLogicConnection object which is the entry point to
      * performing all queries.
      *
-     * It is best practice to reuse a single connection to a
-     * single MarkLogic database to take advantage of connection
-     * pooling capabilities built into java api client (which is a
-     * dependency within marklogic-rdf4j).
+     * Each connection has its own transaction, caches and query
+     * options, and all connections share the HTTP connection pool of
+     * one Java Client API DatabaseClient, so concurrent threads can
+     * each take a connection from one repository.
      *
      * @return MarkLogicRepositoryConnection
      * @throws RepositoryException
@@ -286,27 +303,47 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         if (!isInitialized()) {
             throw new RepositoryException("MarkLogicRepository not initialized.");
         }
-        return new MarkLogicRepositoryConnection(this, getMarkLogicClient(), quadMode);
+        MarkLogicClient client = new MarkLogicClient(getDatabaseClient());
+        client.setTupleResultFormat(tupleResultFormat);
+        client.setGraphResultFormat(graphResultFormat);
+        client.setMetricsRecorder(metricsRecorder);
+        // writes through any connection drop the results cached for all of them
+        client.shareQueryResultCache(getMarkLogicClient());
+        for (RequestListener listener : requestListeners) {
+            client.addRequestListener(listener);
+        }
+        return new MarkLogicRepositoryConnection(this, client, quadMode);
+    }
+
+    /**
+     * Returns the DatabaseClient shared by all connections, creating it
+     * if the repository was shut down.
+     *
+     * @return DatabaseClient
+     */
+    private synchronized DatabaseClient getDatabaseClient() {
+        if (this.databaseClient == null) {
+            if (this.securityContext == null) {
+                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth, this.httpClientSettings);
+            } else {
+                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext, this.httpClientSettings);
+            }
+            this.ownsDatabaseClient = true;
+            this.client = new MarkLogicClient(databaseClient);
+        }
+        return this.databaseClient;
     }
 
-    //TODO: Check and refactor.
     /**
-     * Returns MarkLogicClient object which manages communication to ML server via Java api client
+     * Returns MarkLogicClient object of the repository itself, which manages communication
+     * to ML server via Java api client. Connections each get their own client
+     * over the same DatabaseClient.
      *
      * @return MarkLogicClient
      */
     @Override
     public synchronized MarkLogicClient getMarkLogicClient() {
-        if(this.securityContext == null)
-        {
-            this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
-            this.client = new MarkLogicClient(databaseClient);
-        }
-        else
-        {
-            this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext);
-            this.client = new MarkLogicClient(databaseClient);
-        }
+        getDatabaseClient();
         return this.client;
     }
 
@@ -320,6 +357,39 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.client = client;
     }
 
+    /**
+     * Returns the HTTP settings of the DatabaseClient, null for the defaults.
+     *
+     * @return HttpClientSettings
+     */
+    public HttpClientSettings getHttpClientSettings() {
+        return httpClientSettings;
+    }
+
+    /**
+     * Sets the HTTP connection pool, keep-alive, timeouts and TCP_NODELAY of
+     * the DatabaseClient all connections share. Must be set before the
+     * repository is initialized, and can't be set on a repository made with
+     * a DatabaseClient, which is configured by whoever made it.
+     *
+     * @param httpClientSettings - null for the defaults
+     */
+    public synchronized void setHttpClientSettings(HttpClientSettings httpClientSettings) {
+        if (isInitialized()) {
+            throw new IllegalStateException("HTTP settings must be set before the repository is initialized.");
+        }
+        if (!ownsDatabaseClient) {
+            throw new IllegalStateException("HTTP settings can't be applied to a DatabaseClient passed to the repository.");
+        }
+        this.httpClientSettings = httpClientSettings;
+        // made with the old settings and not used yet, so it is made again on first use
+        if (this.databaseClient != null) {
+            this.client.stopTimer();
+            this.client.release();
+            this.databaseClient = null;
+        }
+    }
+
     /**
      * Returns if repository is in quadmode or not.
      *
@@ -338,4 +408,86 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.quadMode = quadMode;
     }
 
+    /**
+     * Returns the format tuple query results of new connections are sent in.
+     *
+     * @return TupleQueryResultFormat
+     */
+    public TupleQueryResultFormat getTupleResultFormat() {
+        return tupleResultFormat;
+    }
+
+    /**
+     * Sets the format tuple query results of new connections are sent in:
+     * JSON (the default), SPARQL (XML), TSV or CSV.
+     *
+     * @param tupleResultFormat
+     */
+    public void setTupleResultFormat(TupleQueryResultFormat tupleResultFormat) {
+        MarkLogicClient.checkTupleResultFormat(tupleResultFormat);
+        this.tupleResultFormat = tupleResultFormat;
+    }
+
+    /**
+     * Returns the format graph query results of new connections are sent in.
+     *
+     * @return RDFFormat
+     */
+    public RDFFormat getGraphResultFormat() {
+        return graphResultFormat;
+    }
+
+    /**
+     * Sets the format graph query results of new connections are sent in:
+     * N-Triples (the default), Turtle, RDF/XML, RDF/JSON or N3.
+     *
+     * @param graphResultFormat
+     */
+    public void setGraphResultFormat(RDFFormat graphResultFormat) {
+        MarkLogicClient.checkGraphResultFormat(graphResultFormat);
+        this.graphResultFormat = graphResultFormat;
+    }
+
+    /**
+     * Returns where new connections record their metrics.
+     *
+     * @return MetricsRecorder
+     */
+    public MetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    /**
+     * Sets where new connections record latencies, sizes and counts of
+     * their requests and caches, such as a {@link JmxMetricsRecorder}
+     * or a bridge to a metrics registry.
+     *
+     * @param metricsRecorder - null to record nothing
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder != null ? metricsRecorder : MetricsRecorder.NOOP;
+    }
+
+    /**
+     * Adds a listener told as each request of new connections to the
+     * server starts and ends.
+     *
+     * @param listener
+     */
+    public void addRequestListener(RequestListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Request listener must not be null.");
+        }
+        requestListeners.add(listener);
+    }
+
+    /**
+     * Removes a request listener from new connections.
+     *
+     * @param listener
+     */
+    public void removeRequestListener(RequestListener listener) {
+        requestListeners.remove(listener);
+    }
+
 }
\ No newline at end of file
@@ -21,12 +21,20 @@ package com.marklogic.semantics.rdf4j;
 
 import static org.eclipse.rdf4j.query.QueryLanguage.SPARQL;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.Transaction;
@@ -34,10 +42,12 @@ import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.IsolationLevel;
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.iteration.ExceptionConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.Iteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.common.iteration.SingletonIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
@@ -61,6 +71,7 @@ import org.eclipse.rdf4j.query.UnsupportedQueryLanguageException;
 
 import org.eclipse.rdf4j.query.impl.SimpleDataset;
 import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -71,13 +82,21 @@ import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.client.BulkLoadListener;
+import com.marklogic.semantics.rdf4j.client.GraphExportTarget;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.QueryResultCache;
+import com.marklogic.semantics.rdf4j.client.JmxMetricsRecorder;
+import com.marklogic.semantics.rdf4j.client.MetricsRecorder;
+import com.marklogic.semantics.rdf4j.client.RequestListener;
+import com.marklogic.semantics.rdf4j.client.ResultParserExecutor;
 import com.marklogic.semantics.rdf4j.query.MarkLogicBooleanQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicGraphQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicQuery;
@@ -95,6 +114,8 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
 
     private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
 
+    public static final int HAS_STATEMENTS_CHUNK_SIZE = 500;
+
     private static final String EVERYTHING = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }";
 
     private static final String SOMETHING = "ASK { ?s ?p ?o }";
@@ -126,7 +147,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         super(repository);
         this.client = client;
         this.quadMode = true;
-        this.defaultGraphPerms = client.emptyGraphPerms();
+        setDefaultGraphPerms(null);
         client.setValueFactory(repository.getValueFactory());
     }
 
@@ -589,24 +610,13 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
                     sb.append(GET_STATEMENTS);
                 }
                 else {
-                    sb.append("SELECT * WHERE { GRAPH ?ctx { ?s ?p ?o } filter (?ctx = (");
-                    boolean first = true;
-                    for (Resource context : contexts) {
-                        if (first) {
-                            first = false;
-                        } else {
-                            sb.append(",");
-                        }
-                        if (Util.notNull(context)) {
-                            sb.append("IRI(\"").append(context.toString()).append("\")");
-                        } else {
-                            sb.append("IRI(\"" + DEFAULT_GRAPH_URI + "\")");
-                        }
-                    }
-                    sb.append(") ) }");
+                    sb.append("SELECT * WHERE { ").append(graphValues("ctx", contexts)).append("GRAPH ?ctx { ?s ?p ?o } }");
                 }
-                TupleQuery tupleQuery = prepareTupleQuery(sb.toString());
+                MarkLogicTupleQuery tupleQuery = prepareTupleQuery(sb.toString());
                 tupleQuery.setIncludeInferred(includeInferred);
+                if (contexts.length > 0) {
+                    tupleQuery.setGraphScope(contexts);
+                }
                 setBindings(tupleQuery, subj, pred, obj, (Resource) null);
                 TupleQueryResult qRes = tupleQuery.evaluate();
                 return new RepositoryResult<Statement>(
@@ -686,29 +696,15 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
             queryString = SOMETHING;
         }
     	else{
-    		StringBuilder sb= new StringBuilder();
-            sb.append("ASK { GRAPH ?ctx { ?s ?p ?o } filter (?ctx = (");
-            boolean first = true;
-            for (Resource context : contexts) {
-                if (first) {
-                    first = false;
-                }
-                else {
-                    sb.append(",");
-                }
-                if (context == null) {
-                    sb.append("IRI(\""+DEFAULT_GRAPH_URI+"\")");
-                } else {
-                    sb.append("IRI(\"").append(context.toString()).append("\")");
-                }
-            }
-            sb.append(") ) }");
-            queryString = sb.toString();
+            queryString = "ASK { " + graphValues("ctx", contexts) + "GRAPH ?ctx { ?s ?p ?o } }";
         }
         try {
             logger.debug(queryString);
             MarkLogicBooleanQuery query = prepareBooleanQuery(queryString); // baseuri ?
             query.setIncludeInferred(includeInferred);
+            if (contexts.length > 0) {
+                query.setGraphScope(contexts);
+            }
             setBindings(query, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
             return query.evaluate();
         }
@@ -717,6 +713,34 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }
     }
 
+    /**
+     * Checks many statements at once, sending one query per chunk of
+     * HAS_STATEMENTS_CHUNK_SIZE statements instead of one per statement.
+     * With no contexts each statement is looked for in its own context, or
+     * in every graph if it has none.
+     *
+     * @param statements The statements to be checked.
+     * @param includeInferred if false checks only explicit statements. If true checks both explicit and implicit statements.
+     * @param contexts Var-arg for specified contexts.
+     * @return positions in statements of the statements that exist
+     * @throws RepositoryException
+     */
+    @Override
+    public BitSet hasStatements(List<? extends Statement> statements, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        if(!this.isOpen()){throw new RepositoryException("Connection is closed.");}
+        verifyContextNotNull(contexts);
+        BitSet found = new BitSet(statements.size());
+        try {
+            for (int start = 0; start < statements.size(); start += HAS_STATEMENTS_CHUNK_SIZE) {
+                hasStatementsChunk(statements, start, Math.min(statements.size(), start + HAS_STATEMENTS_CHUNK_SIZE), includeInferred, found, contexts);
+            }
+        }
+        catch (MalformedQueryException | QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+        return found;
+    }
+
     /**
      * Exports statements via RDFHandler.
      *
@@ -797,32 +821,15 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     public long size(Resource... contexts) throws RepositoryException {
     	verifyContextNotNull(contexts);
         try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o }");
-            boolean first = true;
-            // with no args, measure the whole triple store.
-            if (contexts != null && contexts.length > 0) {
-                sb.append("filter (?g = (");
-                for (Resource context : contexts) {
-                    if (first) {
-                        first = false;
-                    }
-                    else {
-                        sb.append(",");
-                    }
-                    if (context == null) {
-                        sb.append("IRI(\""+DEFAULT_GRAPH_URI+"\")");
-                    } else {
-                        sb.append("IRI(\"").append(context.toString()).append("\")");
-                    }
-                }
-                sb.append(") )");
-            }else{
-                sb.append("filter (?g = (IRI(\""+DEFAULT_GRAPH_URI+"\")))");
+            // with no args, measure the default graph.
+            if (contexts == null || contexts.length == 0) {
+                contexts = new Resource[] { null };
             }
-            sb.append("}");
+            StringBuilder sb = new StringBuilder();
+            sb.append("SELECT (count(?s) as ?ct) where { ").append(graphValues("g", contexts)).append("GRAPH ?g { ?s ?p ?o } }");
             logger.debug(sb.toString());
             MarkLogicTupleQuery tupleQuery = prepareTupleQuery(sb.toString());
+            tupleQuery.setGraphScope(contexts);
             tupleQuery.setIncludeInferred(false);
             tupleQuery.setRulesets((SPARQLRuleset) null);
             tupleQuery.setConstrainingQueryDefinition((QueryDefinition)null);
@@ -993,6 +1000,93 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }
     }
 
+    /**
+     * Bulk load triples via File, split into chunks uploaded concurrently,
+     * each its own request.
+     *
+     * It will use file uri as base IRI if none supplied.
+     *
+     * @param file the file for insertion.
+     * @param baseURI the baseURI for the content in the file.
+     * @param dataFormat the data format for the file.
+     * @param listener progress listener, may be null.
+     * @param contexts Var-arg for specified context.
+     * @return number of statements loaded
+     * @throws IOException
+     * @throws RDFParseException
+     * @throws RepositoryException if any chunk failed to load
+     */
+    @Override
+    public long bulkLoad(File file, String baseURI, RDFFormat dataFormat, BulkLoadListener listener, Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return bulkLoad(in, Util.notNull(baseURI) ? baseURI : file.toURI().toString(), dataFormat, listener, contexts);
+        }
+    }
+
+    /**
+     * Bulk load triples via InputStream, split into chunks uploaded
+     * concurrently, each its own request.
+     *
+     * @param in the input stream as data source.
+     * @param baseURI the baseURI for the content in the stream.
+     * @param dataFormat the data format for the stream.
+     * @param listener progress listener, may be null.
+     * @param contexts Var-arg for specified context.
+     * @return number of statements loaded
+     * @throws IOException
+     * @throws RDFParseException
+     * @throws RepositoryException if any chunk failed to load
+     */
+    @Override
+    public long bulkLoad(InputStream in, String baseURI, RDFFormat dataFormat, BulkLoadListener listener, Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+        verifyContextNotNull(contexts);
+        return getClient().sendBulkAdd(in, baseURI, dataFormat, listener, contexts);
+    }
+
+    /**
+     * Exports graphs to a stream as serialized by the server, copying the
+     * response bytes without parsing them into statements. Several graphs
+     * can only be exported to one stream as N-Triples, N-Quads or Turtle.
+     *
+     * @param out the stream written to, left open.
+     * @param dataFormat the data format of the export.
+     * @param contexts Var-arg for specified contexts, every graph if none.
+     * @throws RepositoryException
+     */
+    @Override
+    public void exportGraphs(OutputStream out, RDFFormat dataFormat, Resource... contexts) throws RepositoryException {
+        verifyContextNotNull(contexts);
+        getClient().sendExport(out, dataFormat, exportContexts(contexts));
+    }
+
+    /**
+     * Exports graphs concurrently, each to its own stream, as serialized by
+     * the server.
+     *
+     * @param target supplies the stream of each graph, closed once written.
+     * @param dataFormat the data format of the export.
+     * @param threads graphs exported concurrently.
+     * @param contexts Var-arg for specified contexts, every graph if none.
+     * @throws RepositoryException if any graph failed to export
+     */
+    @Override
+    public void exportGraphs(GraphExportTarget target, RDFFormat dataFormat, int threads, Resource... contexts) throws RepositoryException {
+        verifyContextNotNull(contexts);
+        getClient().sendExport(target, dataFormat, threads, exportContexts(contexts));
+    }
+
+    /**
+     * Customise bulk loads.
+     *
+     * @param chunkSize - statements per chunk
+     * @param threads - chunks uploaded concurrently
+     *
+     */
+    @Override
+    public void configureBulkLoad(int chunkSize, int threads){
+        client.configureBulkLoad(chunkSize, threads);
+    }
+
     /**
      * Add triples via Reader.
      *
@@ -1133,11 +1227,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
      */
     @Override
     public void remove(Iterable<? extends Statement> statements) throws RepositoryException {
-        Iterator <? extends Statement> iter = statements.iterator();
-        while(iter.hasNext()){
-            Statement st = iter.next();
-            getClient().sendRemove(null, st.getSubject(), st.getPredicate(), st.getObject());
-        }
+        getClient().sendRemove(new CloseableIteratorIteration<Statement, RepositoryException>(statements.iterator()), false);
     }
 
     /**
@@ -1150,11 +1240,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public void remove(Iterable<? extends Statement> statements, Resource... contexts) throws RepositoryException {
     	verifyContextNotNull(contexts);
-	    Iterator <? extends Statement> iter = statements.iterator();
-	    while(iter.hasNext()){
-	    	Statement st = iter.next();
-	        getClient().sendRemove(null, st.getSubject(), st.getPredicate(), st.getObject(), mergeResource(st.getContext(), contexts));
-	     }
+	    getClient().sendRemove(new CloseableIteratorIteration<Statement, RepositoryException>(statements.iterator()), true, contexts);
 	}
 
     /**
@@ -1167,10 +1253,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
      */
     @Override
     public <E extends Exception> void remove(Iteration<? extends Statement, E> statements) throws RepositoryException, E {
-        while(statements.hasNext()){
-            Statement st = statements.next();
-            getClient().sendRemove(null, st.getSubject(), st.getPredicate(), st.getObject());
-        }
+        getClient().sendRemove(statements, false);
     }
 
     /**
@@ -1185,10 +1268,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public <E extends Exception> void remove(Iteration<? extends Statement, E> statements, Resource... contexts) throws RepositoryException, E {
     	verifyContextNotNull(contexts);
-	 	while(statements.hasNext()){
-            Statement st = statements.next();
-            getClient().sendRemove(null, st.getSubject(), st.getPredicate(), st.getObject(), mergeResource(st.getContext(), contexts));
-        }
+	 	getClient().sendRemove(statements, true, contexts);
 	}
 
     /**
@@ -1307,7 +1387,8 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     }
 
     /**
-     * sets default graph permissions to be used by all queries
+     * sets default graph permissions to be used by all queries and by
+     * statements added through this connection
      *
      * @param graphPerms the graph permissions to be set.
      */
@@ -1318,6 +1399,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }else{
             this.defaultGraphPerms = client.emptyGraphPerms();
         }
+        client.setGraphPerms(this.defaultGraphPerms);
     }
 
     /**
@@ -1387,7 +1469,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
      * Customise write cache interval and cache size. 
      *
      * @param initDelay - initial interval before write cache is checked
-     * @param delayCache - interval (ms) to check write cache
+     * @param delayCache - longest time (ms) a triple waits in write cache
      * @param cacheSize - size (# triples) of write cache
      *
      */
@@ -1396,10 +1478,318 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         client.initTimer(initDelay, delayCache,cacheSize);
     }
 
+    /**
+     * Customise write cache interval, cache size and byte budget. The cache
+     * flushes on whichever limit is hit first: triple count, estimated
+     * serialized size or age.
+     *
+     * @param initDelay - initial interval before write cache is checked
+     * @param delayCache - longest time (ms) a triple waits in write cache
+     * @param cacheSize - size (# triples) of write cache
+     * @param cacheBytes - estimated serialized size (bytes) of write cache
+     *
+     */
+    @Override
+    public void configureWriteCache(long initDelay, long delayCache, long cacheSize, long cacheBytes){
+        client.initTimer(initDelay, delayCache, cacheSize, cacheBytes);
+    }
+
+    /**
+     * Customise write cache flush pipeline. Sealed batches go onto a
+     * bounded queue drained concurrently by the flushers over the shared
+     * HTTP connection pool.
+     *
+     * @param flushers - number of batches flushed concurrently
+     * @param queueDepth - number of sealed batches that may wait for a flusher
+     * @param failFast - if true, add throws when the queue is full, otherwise add blocks
+     *
+     */
+    @Override
+    public void configureFlushPipeline(int flushers, int queueDepth, boolean failFast) throws MarkLogicRdf4jException {
+        client.configureFlushPipeline(flushers, queueDepth, failFast);
+    }
+
+    /**
+     * Enable or disable batching of fully bound removes in the delete cache.
+     * Buffered adds and removes of the same statement are reconciled before
+     * they reach the server. Enabled by default.
+     *
+     * @param deleteCacheEnabled - true to batch removes
+     *
+     */
+    public void setDeleteCacheEnabled(boolean deleteCacheEnabled) throws MarkLogicRdf4jException {
+        client.setDeleteCacheEnabled(deleteCacheEnabled);
+    }
+
+    /**
+     * Flush write cache as N-Quads via the graph store (mergeGraphs)
+     * instead of a SPARQL INSERT DATA update. Falls back to SPARQL
+     * update when graph permissions are set.
+     *
+     * @param quadsMode - true to stream write cache as N-Quads
+     *
+     */
+    public void setWriteCacheQuadsMode(boolean quadsMode){
+        client.setWriteCacheQuadsMode(quadsMode);
+    }
+
+    /**
+     * Skip the duplicate check when adding to the write cache, sending
+     * statements to the server as they were added.
+     *
+     * @param deduplicate - false to append every add to the write cache
+     *
+     */
+    public void setWriteCacheDeduplicate(boolean deduplicate){
+        client.setWriteCacheDeduplicate(deduplicate);
+    }
+
+    /**
+     * Send query bindings, including those of getStatements and hasStatement,
+     * as SPARQL bindings on the request instead of inlining them into the
+     * query text, so the server can reuse plans of identical query text.
+     * Blank nodes and literals of non XSD datatypes are still inlined.
+     *
+     * @param serverSideBindings - true to send bindings as SPARQL bindings
+     *
+     */
+    public void setServerSideBindings(boolean serverSideBindings){
+        client.setServerSideBindings(serverSideBindings);
+    }
+
+    /**
+     * Let queries read without flushing the write and delete caches, so a
+     * read may miss adds and removes made shortly before it. Updates still
+     * flush the caches when they touch a graph with pending statements.
+     *
+     * @param eventualReads - true to read without flushing the caches
+     *
+     */
+    public void setEventualReads(boolean eventualReads){
+        client.setEventualReads(eventualReads);
+    }
+
+    /**
+     * Cache results of tuple, graph and boolean queries, so repeated queries
+     * are answered without a request. The cache is shared by every connection
+     * of the repository, so enabling it here enables it for all of them, and
+     * cached results are dropped whenever any of them writes. Writes of other
+     * clients of the database only show up once a result expires. Queries
+     * inside a transaction are not cached.
+     *
+     * @param enabled - true to cache query results
+     *
+     */
+    public void setQueryResultCacheEnabled(boolean enabled){
+        client.setQueryResultCacheEnabled(enabled);
+    }
+
+    /**
+     * Customise and enable the query result cache shared by every connection
+     * of the repository.
+     *
+     * @param maxEntries - results kept, least recently used dropped first
+     * @param ttlMillis - time (ms) a result is kept
+     * @param maxRows - rows or statements of the largest result kept
+     *
+     */
+    public void configureQueryResultCache(int maxEntries, long ttlMillis, int maxRows){
+        client.configureQueryResultCache(maxEntries, ttlMillis, maxRows);
+    }
+
+    /**
+     * Returns the query result cache and its hit and miss counts, null if disabled.
+     *
+     * @return QueryResultCache
+     */
+    public QueryResultCache getQueryResultCache(){
+        return client.getQueryResultCache();
+    }
+
+    /**
+     * Set the format tuple query results are sent in, SPARQL JSON by default.
+     * TSV is the smallest on the wire for results heavy in IRIs; CSV drops
+     * datatypes and languages of literals.
+     *
+     * @param resultFormat - JSON, SPARQL (XML), TSV or CSV
+     *
+     */
+    public void setTupleResultFormat(TupleQueryResultFormat resultFormat){
+        client.setTupleResultFormat(resultFormat);
+    }
+
+    /**
+     * Set the format graph query results are sent in, N-Triples by default.
+     *
+     * @param resultFormat - N-Triples, Turtle, RDF/XML, RDF/JSON or N3
+     *
+     */
+    public void setGraphResultFormat(RDFFormat resultFormat){
+        client.setGraphResultFormat(resultFormat);
+    }
+
+    /**
+     * Parse query results on the given executor instead of the one shared by
+     * every connection, bounding the threads results of this connection use.
+     *
+     * @param parserExecutor - executor parsing results in the background
+     *
+     */
+    public void setParserExecutor(ResultParserExecutor parserExecutor){
+        client.setParserExecutor(parserExecutor);
+    }
+
+    /**
+     * Record latencies, sizes and counts of the requests and caches of this
+     * connection, such as with a {@link JmxMetricsRecorder}.
+     *
+     * @param metricsRecorder - null to record nothing
+     *
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder){
+        client.setMetricsRecorder(metricsRecorder);
+    }
+
+    /**
+     * getter for the metrics recorder of this connection
+     *
+     * @return
+     */
+    public MetricsRecorder getMetricsRecorder(){
+        return client.getMetricsRecorder();
+    }
+
+    /**
+     * Tell listener as each request of this connection to the server starts
+     * and ends, to trace them.
+     *
+     * @param listener
+     *
+     */
+    public void addRequestListener(RequestListener listener){
+        client.addRequestListener(listener);
+    }
+
+    /**
+     * Stop telling listener of requests of this connection.
+     *
+     * @param listener
+     *
+     */
+    public void removeRequestListener(RequestListener listener){
+        client.removeRequestListener(listener);
+    }
+
+    /**
+     * Customise result parsing. A background parser stops once queueDepth
+     * rows or statements wait to be read; when every parser thread is busy
+     * the result is parsed on the caller's thread instead.
+     *
+     * @param queueDepth - rows or statements parsed ahead of the reader
+     * @param syncParse - true to always parse results fully before returning them, for small results
+     *
+     */
+    public void configureResultParsing(int queueDepth, boolean syncParse){
+        client.setResultQueueDepth(queueDepth);
+        client.setSyncParse(syncParse);
+    }
+
+    /**
+     * Write cached and bulk loaded triples as managed triples documents
+     * through a Data Movement SDK WriteBatcher, spreading the load across
+     * every host of the cluster with failover and batch retries. Writes
+     * inside a transaction still go through the REST host.
+     *
+     * @param enabled - true to write triples as documents
+     * @throws MarkLogicRdf4jException
+     */
+    public void setDocumentIngestion(boolean enabled) throws MarkLogicRdf4jException {
+        client.setDocumentIngestion(enabled);
+    }
+
+    /**
+     * Customise document ingestion.
+     *
+     * @param batchSize - documents per WriteBatcher batch
+     * @param threadCount - batches written concurrently
+     * @throws MarkLogicRdf4jException
+     */
+    public void configureDocumentIngestion(int batchSize, int threadCount) throws MarkLogicRdf4jException {
+        client.configureDocumentIngestion(batchSize, threadCount);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // private ////////////////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    private Resource[] exportContexts(Resource... contexts) {
+        if (contexts.length > 0) {
+            return contexts;
+        }
+        List<Resource> all = Iterations.asList(getContextIDs());
+        return all.toArray(new Resource[all.size()]);
+    }
+
+    /**
+     * Renders a VALUES clause binding a graph variable to each context, a
+     * null context being the default graph, so the server probes the triple
+     * index per graph instead of filtering the triples of every graph.
+     */
+    private String graphValues(String var, Resource... contexts) {
+        Set<String> graphs = new LinkedHashSet<>();
+        for (Resource context : contexts) {
+            graphs.add(context == null ? "<" + DEFAULT_GRAPH_URI + ">" : NTriplesUtil.toNTriplesString(util.skolemize(context)));
+        }
+        return "VALUES ?" + var + " { " + String.join(" ", graphs) + " } ";
+    }
+
+    /**
+     * Checks statements from up to to, sending the ones with a graph and the
+     * ones without as two VALUES queries returning the positions found.
+     */
+    private void hasStatementsChunk(List<? extends Statement> statements, int from, int to, boolean includeInferred, BitSet found, Resource... contexts) {
+        StringBuilder inGraph = new StringBuilder();
+        StringBuilder anyGraph = new StringBuilder();
+        Set<Resource> graphs = new HashSet<>();
+        for (int i = from; i < to; i++) {
+            Statement st = statements.get(i);
+            String triple = " " + NTriplesUtil.toNTriplesString(util.skolemize(st.getSubject()))
+                    + " " + NTriplesUtil.toNTriplesString(util.skolemize(st.getPredicate()))
+                    + " " + NTriplesUtil.toNTriplesString(util.skolemize(st.getObject()));
+            Resource[] ctxs = contexts;
+            if (ctxs.length == 0 && st.getContext() != null) {
+                ctxs = new Resource[] { st.getContext() };
+            }
+            if (ctxs.length == 0) {
+                anyGraph.append("(").append(i).append(triple).append(")\n");
+            }
+            for (Resource ctx : ctxs) {
+                Value graph = ctx == null ? getValueFactory().createIRI(DEFAULT_GRAPH_URI) : util.skolemize(ctx);
+                graphs.add((Resource) graph);
+                inGraph.append("(").append(i).append(triple).append(" ").append(NTriplesUtil.toNTriplesString(graph)).append(")\n");
+            }
+        }
+        if (inGraph.length() > 0) {
+            MarkLogicTupleQuery query = prepareTupleQuery("SELECT DISTINCT ?i WHERE { VALUES (?i ?s ?p ?o ?ctx) {\n" + inGraph + "} GRAPH ?ctx { ?s ?p ?o } }");
+            query.setIncludeInferred(includeInferred);
+            query.setGraphScope(graphs.toArray(new Resource[graphs.size()]));
+            setPositions(query, found);
+        }
+        if (anyGraph.length() > 0) {
+            MarkLogicTupleQuery query = prepareTupleQuery("SELECT DISTINCT ?i WHERE { VALUES (?i ?s ?p ?o) {\n" + anyGraph + "} ?s ?p ?o }");
+            query.setIncludeInferred(includeInferred);
+            setPositions(query, found);
+        }
+    }
+
+    private static void setPositions(MarkLogicTupleQuery query, BitSet found) {
+        try (TupleQueryResult result = query.evaluate()) {
+            while (result.hasNext()) {
+                found.set(((Literal) result.next().getValue("i")).intValue());
+            }
+        }
+    }
+
     /**
      * get client and check if repositoryconnection is open
      *
@@ -22,10 +22,22 @@ package com.marklogic.semantics.rdf4j;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.client.BulkLoadListener;
+import com.marklogic.semantics.rdf4j.client.GraphExportTarget;
 import org.eclipse.rdf4j.common.iteration.Iteration;
+import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.query.*;
 import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Interface defining MarkLogic semantic features.
@@ -55,6 +67,8 @@ interface MarkLogicRepositoryConnectionDependent {
     void remove(Iterable<? extends Statement> statements) throws RepositoryException;
     <E extends Exception> void remove(Iteration<? extends Statement, E> statements) throws RepositoryException, E;
 
+    BitSet hasStatements(List<? extends Statement> statements, boolean includeInferred, Resource... contexts) throws RepositoryException;
+
     void setDefaultGraphPerms(GraphPermissions graphPerms);
     GraphPermissions getDefaultGraphPerms();
 
@@ -68,4 +82,18 @@ interface MarkLogicRepositoryConnectionDependent {
 
     void configureWriteCache(long initDelay, long delayCache, long cacheSize);
 
+    void configureWriteCache(long initDelay, long delayCache, long cacheSize, long cacheBytes);
+
+    void configureFlushPipeline(int flushers, int queueDepth, boolean failFast) throws MarkLogicRdf4jException;
+
+    long bulkLoad(File file, String baseURI, RDFFormat dataFormat, BulkLoadListener listener, Resource... contexts) throws IOException, RDFParseException, RepositoryException;
+
+    long bulkLoad(InputStream in, String baseURI, RDFFormat dataFormat, BulkLoadListener listener, Resource... contexts) throws IOException, RDFParseException, RepositoryException;
+
+    void configureBulkLoad(int chunkSize, int threads);
+
+    void exportGraphs(OutputStream out, RDFFormat dataFormat, Resource... contexts) throws RepositoryException;
+
+    void exportGraphs(GraphExportTarget target, RDFFormat dataFormat, int threads, Resource... contexts) throws RepositoryException;
+
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+/**
+ * Receives progress of a bulk load, called from the upload threads.
+ *
+ */
+public interface BulkLoadListener {
+
+    /**
+     * Called when a chunk is loaded.
+     *
+     * @param chunk - sequence number of the chunk, from 0
+     * @param statements - statements in the chunk
+     * @param loadedStatements - statements loaded so far
+     */
+    default void chunkLoaded(int chunk, long statements, long loadedStatements) {
+    }
+
+    /**
+     * Called when a chunk fails to load, the remaining chunks are still loaded.
+     *
+     * @param chunk - sequence number of the chunk, from 0
+     * @param statements - statements in the chunk
+     * @param e - the failure
+     */
+    default void chunkFailed(int chunk, long statements, Exception e) {
+    }
+
+}
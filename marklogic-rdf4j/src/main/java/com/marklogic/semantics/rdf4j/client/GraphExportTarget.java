@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.Resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Supplies the stream each graph of a parallel export is written to,
+ * called from the export threads. Streams are closed once written.
+ *
+ */
+public interface GraphExportTarget {
+
+    /**
+     * @param context - graph, null for the default graph
+     * @return stream the graph is written to
+     * @throws IOException
+     */
+    OutputStream open(Resource context) throws IOException;
+
+}
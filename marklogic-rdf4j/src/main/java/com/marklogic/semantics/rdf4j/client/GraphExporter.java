@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports graphs by copying the server's serialization of each graph to an
+ * OutputStream, without parsing it into statements on the client.
+ *
+ * N-Quads are read as N-Triples and the graph is appended to each line as it
+ * is copied; every other format is copied byte for byte. Graphs can be
+ * exported one after another into one stream, or concurrently into a stream
+ * each.
+ *
+ */
+public class GraphExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphExporter.class);
+
+    private static final AtomicInteger exporterCount = new AtomicInteger();
+
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MarkLogicClient client;
+    private final RDFFormat format;
+
+    /**
+     * @param client
+     * @param format - format of the export
+     */
+    public GraphExporter(MarkLogicClient client, RDFFormat format) {
+        this.client = client;
+        this.format = format;
+    }
+
+    /**
+     * Checks if graphs exported one after another into one stream still
+     * make a single document of the format.
+     *
+     * @param format
+     * @return
+     */
+    public static boolean isConcatenable(RDFFormat format) {
+        return format.equals(RDFFormat.NTRIPLES) || format.equals(RDFFormat.NQUADS) || format.equals(RDFFormat.TURTLE);
+    }
+
+    /**
+     * Writes graphs one after another to out, leaving it open.
+     *
+     * @param out
+     * @param contexts - graphs, null for the default graph
+     * @throws MarkLogicRdf4jException
+     */
+    public void export(OutputStream out, Resource... contexts) throws MarkLogicRdf4jException {
+        if (contexts.length > 1 && !isConcatenable(format)) {
+            throw new IllegalArgumentException("Can only export several graphs to one stream as N-Triples, N-Quads or Turtle.");
+        }
+        try {
+            for (Resource context : contexts) {
+                copyGraph(context, out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException("Could not write exported graph.", e);
+        }
+    }
+
+    /**
+     * Writes each graph to its own stream, threads graphs at a time, waiting
+     * until every graph is written.
+     *
+     * @param target
+     * @param threads - graphs exported concurrently
+     * @param contexts - graphs, null for the default graph
+     * @throws MarkLogicRdf4jException if any graph failed, after the others are written
+     */
+    public void export(GraphExportTarget target, int threads, Resource... contexts) throws MarkLogicRdf4jException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Export needs a positive thread count.");
+        }
+        int exporter = exporterCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        // requests of a transaction are sent one at a time
+        ExecutorService pool = Executors.newFixedThreadPool(client.isActiveTransaction() ? 1 : threads, r -> {
+            Thread t = new Thread(r, "marklogic-rdf4j-export-" + exporter + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        for (Resource context : contexts) {
+            pool.execute(() -> {
+                try (OutputStream out = target.open(context)) {
+                    copyGraph(context, out);
+                } catch (Exception e) {
+                    log.error("Could not export graph {}: {}", context, e.getLocalizedMessage());
+                    failures.add(e);
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("waiting for graph exports");
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MarkLogicRdf4jException("Interrupted waiting for graph exports.", e);
+        }
+        if (!failures.isEmpty()) {
+            throw new MarkLogicRdf4jException(failures.size() + " of " + contexts.length + " graph exports failed.", failures.get(0));
+        }
+    }
+
+    private void copyGraph(Resource context, OutputStream out) throws IOException, MarkLogicRdf4jException {
+        boolean quads = format.equals(RDFFormat.NQUADS);
+        try (InputStream in = client.sendReadGraph(context, quads ? RDFFormat.NTRIPLES : format)) {
+            if (quads && context != null && !context.stringValue().equals(DEFAULT_GRAPH_URI)) {
+                copyAsQuads(in, out, NTriplesUtil.toNTriplesString(context));
+            } else {
+                copy(in, out);
+            }
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Copies N-Triples lines, inserting the graph before the final dot of each statement.
+     */
+    private static void copyAsQuads(InputStream in, OutputStream out, String graph) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            if (end == 0 || line.charAt(end - 1) != '.' || line.trim().startsWith("#")) {
+                writer.write(line);
+            } else {
+                writer.write(line, 0, end - 1);
+                writer.write(graph);
+                writer.write(" .");
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+}
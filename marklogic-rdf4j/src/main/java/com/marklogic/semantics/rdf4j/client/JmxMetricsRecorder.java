@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps metrics in memory and exports each as an MXBean named
+ * com.marklogic.semantics.rdf4j:type=Metrics,scope=...,name=...
+ *
+ * Distributions keep a count, total, max and mean, and percentiles
+ * approximated by the upper bound of a power of two bucket, so recording
+ * is a few atomic updates and no samples are held.
+ *
+ */
+public class JmxMetricsRecorder implements MetricsRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(JmxMetricsRecorder.class);
+
+    public static final String DOMAIN = "com.marklogic.semantics.rdf4j";
+
+    private final MBeanServer server;
+    private final String scope;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+    private final Map<String, ObjectName> registered = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a recorder exporting to the platform MBean server.
+     *
+     * @param scope - tells the metrics of this recorder apart, such as a repository id
+     */
+    public JmxMetricsRecorder(String scope) {
+        this(ManagementFactory.getPlatformMBeanServer(), scope);
+    }
+
+    /**
+     * @param server - server to export to, null to keep metrics in memory only
+     * @param scope - tells the metrics of this recorder apart, such as a repository id
+     */
+    public JmxMetricsRecorder(MBeanServer server, String scope) {
+        if (scope == null || scope.isEmpty()) {
+            throw new IllegalArgumentException("Metrics scope must not be empty.");
+        }
+        this.server = server;
+        this.scope = scope;
+    }
+
+    /**
+     * getter for scope
+     *
+     * @return
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    @Override
+    public void recordTime(String name, long nanos) {
+        getDistribution(name).record(nanos);
+    }
+
+    @Override
+    public void recordAmount(String name, long amount) {
+        getDistribution(name).record(amount);
+    }
+
+    @Override
+    public void increment(String name) {
+        getCounter(name).increment();
+    }
+
+    /**
+     * Returns the counter of name, creating and exporting it if needed.
+     *
+     * @param name
+     * @return
+     */
+    public Counter getCounter(String name) {
+        return counters.computeIfAbsent(name, n -> register(n, new Counter()));
+    }
+
+    /**
+     * Returns the distribution of name, creating and exporting it if needed.
+     *
+     * @param name
+     * @return
+     */
+    public Distribution getDistribution(String name) {
+        return distributions.computeIfAbsent(name, n -> register(n, new Distribution()));
+    }
+
+    /**
+     * Unexports every metric of this recorder.
+     */
+    public void close() {
+        for (ObjectName objectName : registered.values()) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.debug("Could not unregister {}: {}", objectName, e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    private <T> T register(String name, T metric) {
+        if (server == null) {
+            return metric;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Metrics,scope=" + ObjectName.quote(scope) + ",name=" + ObjectName.quote(name));
+            server.registerMBean(metric, objectName);
+            registered.put(name, objectName);
+        } catch (JMException e) {
+            // still recorded, just not visible over JMX
+            log.warn("Could not export metric {} of {}: {}", name, scope, e.getMessage());
+        }
+        return metric;
+    }
+
+    /**
+     * A count of events.
+     */
+    public interface CounterMXBean {
+
+        long getCount();
+
+    }
+
+    /**
+     * Count, total, max, mean and approximate percentiles of samples.
+     */
+    public interface DistributionMXBean {
+
+        long getCount();
+
+        long getTotal();
+
+        long getMax();
+
+        double getMean();
+
+        long get50thPercentile();
+
+        long get95thPercentile();
+
+        long get99thPercentile();
+
+    }
+
+    public static final class Counter implements CounterMXBean {
+
+        private final AtomicLong count = new AtomicLong();
+
+        void increment() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public long getCount() {
+            return count.get();
+        }
+
+    }
+
+    public static final class Distribution implements DistributionMXBean {
+
+        // bucket i holds samples below 2^i and at least 2^(i-1)
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long amount) {
+            if (amount < 0) {
+                amount = 0;
+            }
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(amount));
+            total.addAndGet(amount);
+            max.accumulateAndGet(amount, Math::max);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public long getCount() {
+            return count.get();
+        }
+
+        @Override
+        public long getTotal() {
+            return total.get();
+        }
+
+        @Override
+        public long getMax() {
+            return max.get();
+        }
+
+        @Override
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) total.get() / n;
+        }
+
+        @Override
+        public long get50thPercentile() {
+            return percentile(0.5);
+        }
+
+        @Override
+        public long get95thPercentile() {
+            return percentile(0.95);
+        }
+
+        @Override
+        public long get99thPercentile() {
+            return percentile(0.99);
+        }
+
+        /**
+         * Returns the upper bound of the bucket the sample of rank q falls in,
+         * at most the max.
+         */
+        private long percentile(double q) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long bound = i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(bound, getMax());
+                }
+            }
+            return getMax();
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.AbstractBindingSet;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.impl.MapBindingSet;
+import org.eclipse.rdf4j.query.impl.SimpleBinding;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Row of a SPARQL JSON result holding the terms as read, each turned into
+ * a value the first time it is asked for. Columns the caller never reads
+ * are never decoded.
+ *
+ */
+final class LazyBindingSet extends AbstractBindingSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Variable names of a result and their column, never changed once rows
+     * refer to them.
+     */
+    static final class Columns {
+        final List<String> names;
+        private final Map<String, Integer> index;
+
+        Columns(List<String> names) {
+            this.names = Collections.unmodifiableList(names);
+            this.index = new HashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                index.put(names.get(i), i);
+            }
+        }
+
+        int indexOf(String name) {
+            Integer i = index.get(name);
+            return i == null ? -1 : i;
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+
+    private final Columns columns;
+    private final ValueDecoder decoder;
+    private final byte[] kinds;
+    private final String[] lexicals;
+    private final String[] extras;
+    private final AtomicReferenceArray<Value> values;
+
+    /**
+     * @param columns
+     * @param decoder
+     * @param kinds - kind of the term of each column, 0 if unbound
+     * @param lexicals
+     * @param extras - language or datatype of literals
+     */
+    LazyBindingSet(Columns columns, ValueDecoder decoder, byte[] kinds, String[] lexicals, String[] extras) {
+        this.columns = columns;
+        this.decoder = decoder;
+        this.kinds = kinds;
+        this.lexicals = lexicals;
+        this.extras = extras;
+        this.values = new AtomicReferenceArray<>(kinds.length);
+    }
+
+    @Override
+    public Value getValue(String bindingName) {
+        return valueAt(columns.indexOf(bindingName));
+    }
+
+    @Override
+    public Binding getBinding(String bindingName) {
+        Value value = getValue(bindingName);
+        return value == null ? null : new SimpleBinding(bindingName, value);
+    }
+
+    @Override
+    public boolean hasBinding(String bindingName) {
+        int i = columns.indexOf(bindingName);
+        return i >= 0 && i < kinds.length && kinds[i] != 0;
+    }
+
+    @Override
+    public Set<String> getBindingNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != 0) {
+                names.add(columns.names.get(i));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (byte kind : kinds) {
+            if (kind != 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<Binding> iterator() {
+        return new Iterator<Binding>() {
+            private int next = skipUnbound(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < kinds.length;
+            }
+
+            @Override
+            public Binding next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Binding binding = new SimpleBinding(columns.names.get(next), valueAt(next));
+                next = skipUnbound(next + 1);
+                return binding;
+            }
+        };
+    }
+
+    /**
+     * Serializes as a plain binding set, the decoder is not serializable.
+     */
+    private Object writeReplace() {
+        MapBindingSet copy = new MapBindingSet(kinds.length);
+        for (Binding binding : this) {
+            copy.addBinding(binding);
+        }
+        return copy;
+    }
+
+    private int skipUnbound(int i) {
+        while (i < kinds.length && kinds[i] == 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private Value valueAt(int i) {
+        if (i < 0 || i >= kinds.length || kinds[i] == 0) {
+            return null;
+        }
+        Value value = values.get(i);
+        if (value == null) {
+            // decoding twice from racing readers is harmless
+            value = decoder.decode(kinds[i], lexicals[i], extras[i]);
+            values.lazySet(i, value);
+        }
+        return value;
+    }
+
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ForbiddenUserException;
 import com.marklogic.client.Transaction;
+import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
@@ -30,28 +31,41 @@ import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.MarkLogicTransactionException;
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.apache.commons.io.input.ReaderInputStream;
+import org.eclipse.rdf4j.common.iteration.Iteration;
 import org.eclipse.rdf4j.http.protocol.UnauthorizedException;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.query.*;
+import org.eclipse.rdf4j.query.impl.IteratingGraphQueryResult;
+import org.eclipse.rdf4j.query.impl.QueueCursor;
+import org.eclipse.rdf4j.query.impl.TupleQueryResultBuilder;
 import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.QueryResultParseException;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.eclipse.rdf4j.rio.*;
 import org.eclipse.rdf4j.rio.helpers.ParseErrorLogger;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Timer;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An internal class that straddles Rdf4j and MarkLogic Java client API.
@@ -67,12 +81,26 @@ public class MarkLogicClient {
 
 	protected static final TupleQueryResultFormat format = TupleQueryResultFormat.JSON;
 	protected static final RDFFormat rdfFormat = RDFFormat.NTRIPLES;
+
+	private static final List<TupleQueryResultFormat> TUPLE_RESULT_FORMATS = Arrays.asList(
+			TupleQueryResultFormat.JSON, TupleQueryResultFormat.SPARQL, TupleQueryResultFormat.TSV, TupleQueryResultFormat.CSV);
+	private static final List<RDFFormat> GRAPH_RESULT_FORMATS = Arrays.asList(
+			RDFFormat.NTRIPLES, RDFFormat.TURTLE, RDFFormat.RDFXML, RDFFormat.RDFJSON, RDFFormat.N3);
+
+	private TupleQueryResultFormat tupleResultFormat = format;
+	private RDFFormat graphResultFormat = rdfFormat;
 	private MarkLogicClientImpl _client;
 
-	private final Executor executor = Executors.newCachedThreadPool();
+	private ResultParserExecutor parserExecutor = ResultParserExecutor.getShared();
+	private int resultQueueDepth = ResultParserExecutor.DEFAULT_QUEUE_DEPTH;
+	private boolean syncParse = false;
+
+	private volatile MetricsRecorder metrics = MetricsRecorder.NOOP;
 
 	private ValueFactory f;
 
+	private ValueDecoder valueDecoder;
+
 	private ParserConfig parserConfig = new ParserConfig();
 
 	private Transaction tx = null;
@@ -80,12 +108,35 @@ public class MarkLogicClient {
 	private SPARQLRuleset[] defaultRulesets;
 
 	private TripleWriteCache timerWriteCache;
-	private Timer writeTimer;
 	private TripleDeleteCache timerDeleteCache;
-	private Timer deleteTimer;
 
 	private static boolean WRITE_CACHE_ENABLED = true;
-	private static boolean DELETE_CACHE_ENABLED = false;
+	private boolean deleteCacheEnabled = true;
+
+	private boolean writeCacheQuadsMode = false;
+	private boolean writeCacheDeduplicate = true;
+
+	private boolean serverSideBindings = false;
+
+	private boolean eventualReads = false;
+
+	// shared by clients of one repository, so a write through any of them drops cached results
+	private volatile AtomicReference<QueryResultCache> queryResultCache = new AtomicReference<>();
+
+	private long cacheInitDelay = TripleCache.DEFAULT_INITIAL_DELAY;
+	private long cacheDelay = TripleCache.DEFAULT_CACHE_MILLIS;
+	private long cacheSize = TripleCache.DEFAULT_CACHE_SIZE;
+	private long cacheBytes = TripleCache.DEFAULT_CACHE_BYTES;
+	private int flushers = TripleCache.DEFAULT_FLUSHERS;
+	private int flushQueueDepth = TripleCache.DEFAULT_QUEUE_DEPTH;
+	private boolean flushFailFast = false;
+
+	private int bulkChunkSize = TripleBulkLoader.DEFAULT_CHUNK_SIZE;
+	private int bulkThreads = TripleBulkLoader.DEFAULT_THREADS;
+
+	private TripleDocumentWriter documentWriter;
+	private int documentBatchSize = TripleDocumentWriter.DEFAULT_BATCH_SIZE;
+	private int documentThreads = TripleDocumentWriter.DEFAULT_THREAD_COUNT;
 
 	private Util util = Util.getInstance();
 
@@ -111,54 +162,165 @@ public class MarkLogicClient {
 	 * start Timer task (write cache)
 	 */
 	public void initTimer(){
-		stopTimer();
-		if(WRITE_CACHE_ENABLED) {
-			logger.debug("configuring write cache with defaults");
-			timerWriteCache = new TripleWriteCache(this);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, TripleWriteCache.DEFAULT_INITIAL_DELAY, TripleWriteCache.DEFAULT_CACHE_MILLIS);
-		}
-		if(DELETE_CACHE_ENABLED) {
-			logger.debug("configuring delete cache with defaults");
-			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, TripleDeleteCache.DEFAULT_INITIAL_DELAY, TripleDeleteCache.DEFAULT_CACHE_MILLIS);
-		}
+		logger.debug("configuring write cache with defaults");
+		initTimer(TripleCache.DEFAULT_INITIAL_DELAY, TripleCache.DEFAULT_CACHE_MILLIS, TripleCache.DEFAULT_CACHE_SIZE);
 	}
 
 	public void initTimer(long initDelay, long delayCache, long cacheSize ){
+		initTimer(initDelay, delayCache, cacheSize, this.cacheBytes);
+	}
+
+	/**
+	 * start write and delete caches, flushing on whichever of triple count,
+	 * estimated byte size or age is hit first. Caches are ticked by a scheduler
+	 * shared across clients, only while they hold triples.
+	 *
+	 * @param initDelay - kept for compatibility, ticks are scheduled as triples arrive
+	 * @param delayCache - longest a triple waits in a cache
+	 * @param cacheSize
+	 * @param cacheBytes
+	 */
+	public void initTimer(long initDelay, long delayCache, long cacheSize, long cacheBytes){
 		stopTimer();
+		this.cacheInitDelay = initDelay;
+		this.cacheDelay = delayCache;
+		this.cacheSize = cacheSize;
+		this.cacheBytes = cacheBytes;
 		if(WRITE_CACHE_ENABLED) {
 			logger.debug("configuring write cache");
-			timerWriteCache = new TripleWriteCache(this,cacheSize);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, initDelay, delayCache);
+			timerWriteCache = new TripleWriteCache(this, cacheSize, flushers, flushQueueDepth, flushFailFast);
+			timerWriteCache.setCacheBytes(cacheBytes);
+			timerWriteCache.setCacheMillis(delayCache);
+			timerWriteCache.setQuadsMode(writeCacheQuadsMode);
+			timerWriteCache.setDeduplicate(writeCacheDeduplicate);
 		}
-		if(DELETE_CACHE_ENABLED) {
+		if(deleteCacheEnabled) {
 			logger.debug("configuring delete cache");
-			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, initDelay, delayCache);
+			timerDeleteCache = new TripleDeleteCache(this, cacheSize);
+			timerDeleteCache.setCacheBytes(cacheBytes);
+			timerDeleteCache.setCacheMillis(delayCache);
+		}
+	}
+	/**
+	 * Configures the write cache flush pipeline, flushing anything
+	 * buffered before the cache is rebuilt.
+	 *
+	 * @param flushers - number of batches flushed concurrently
+	 * @param queueDepth - number of sealed batches waiting for a flusher
+	 * @param failFast - if true, adds fail instead of blocking when the queue is full
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void configureFlushPipeline(int flushers, int queueDepth, boolean failFast) throws MarkLogicRdf4jException {
+		if (flushers < 1 || queueDepth < 0) {
+			throw new IllegalArgumentException("Flush pipeline needs at least one flusher and a non-negative queue depth.");
 		}
+		sync();
+		this.flushers = flushers;
+		this.flushQueueDepth = queueDepth;
+		this.flushFailFast = failFast;
+		initTimer(cacheInitDelay, cacheDelay, cacheSize, cacheBytes);
+	}
+
+	/**
+	 * Returns number of write cache batches queued or being flushed.
+	 *
+	 * @return int
+	 */
+	public int getWriteCacheQueueDepth() {
+		return timerWriteCache != null ? timerWriteCache.getQueueDepth() : 0;
 	}
+
 	/**
-	 * stop Timer task (write cache)
+	 * stop write and delete caches
 	 */
 	public void stopTimer() {
-		if(WRITE_CACHE_ENABLED) {
-			if(timerWriteCache != null) {
-				timerWriteCache.cancel();
-			}
-			if(writeTimer != null){
-				writeTimer.cancel();
-			}
-			if(timerDeleteCache != null) {
-				timerDeleteCache.cancel();
-			}
-			if(deleteTimer != null){
-				deleteTimer.cancel();
+		if(timerWriteCache != null) {
+			timerWriteCache.cancel();
+		}
+		if(timerDeleteCache != null) {
+			timerDeleteCache.cancel();
+		}
+	}
+
+	/**
+	 * set true to flush write cache as N-Quads via the graph store
+	 *
+	 * @param quadsMode
+	 */
+	public void setWriteCacheQuadsMode(boolean quadsMode) {
+		this.writeCacheQuadsMode = quadsMode;
+		if(timerWriteCache != null) {
+			timerWriteCache.setQuadsMode(quadsMode);
+		}
+	}
+
+	/**
+	 * return true if write cache is flushed as N-Quads via the graph store
+	 *
+	 * @return
+	 */
+	public boolean isWriteCacheQuadsMode() {
+		return this.writeCacheQuadsMode;
+	}
+
+	/**
+	 * set true to send query bindings to the server as SPARQL bindings,
+	 * keeping the query text identical across bound values
+	 *
+	 * @param serverSideBindings
+	 */
+	public void setServerSideBindings(boolean serverSideBindings) {
+		this.serverSideBindings = serverSideBindings;
+	}
+
+	/**
+	 * return true if query bindings are sent to the server as SPARQL bindings
+	 *
+	 * @return
+	 */
+	public boolean isServerSideBindings() {
+		return this.serverSideBindings;
+	}
+
+	/**
+	 * Checks if bindings are sent as SPARQL bindings: the mode is on and
+	 * every value is an IRI or a literal the server can type, blank nodes
+	 * and custom datatypes are inlined into the query text instead.
+	 *
+	 * @param bindings
+	 * @return
+	 */
+	public boolean canBindServerSide(SPARQLQueryBindingSet bindings) {
+		if (!serverSideBindings) {
+			return false;
+		}
+		for (Binding binding : bindings) {
+			if (!MarkLogicClientImpl.isBindable(binding.getValue())) {
+				return false;
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * set false to skip the duplicate check when adding to the write cache
+	 *
+	 * @param deduplicate
+	 */
+	public void setWriteCacheDeduplicate(boolean deduplicate) {
+		this.writeCacheDeduplicate = deduplicate;
+		if(timerWriteCache != null) {
+			timerWriteCache.setDeduplicate(deduplicate);
+		}
+	}
+
+	/**
+	 * return true if duplicate adds are dropped by the write cache
+	 *
+	 * @return
+	 */
+	public boolean isWriteCacheDeduplicate() {
+		return this.writeCacheDeduplicate;
 	}
 
 	/**
@@ -169,10 +331,283 @@ public class MarkLogicClient {
 	public void sync() throws MarkLogicRdf4jException {
 		if(WRITE_CACHE_ENABLED && timerWriteCache != null)
 			timerWriteCache.forceRun();
-		if(DELETE_CACHE_ENABLED && timerDeleteCache != null)
+		if(deleteCacheEnabled && timerDeleteCache != null)
 			timerDeleteCache.forceRun();
 	}
 
+	/**
+	 * Checks if the write or delete cache holds statements of one of the
+	 * graphs that are not yet written, a null graph being the default graph;
+	 * null graphs checks for any statement.
+	 *
+	 * @param graphs
+	 * @return
+	 */
+	public boolean isCacheDirty(Collection<? extends Resource> graphs) {
+		if(WRITE_CACHE_ENABLED && timerWriteCache != null && timerWriteCache.isDirty(graphs))
+			return true;
+		return deleteCacheEnabled && timerDeleteCache != null && timerDeleteCache.isDirty(graphs);
+	}
+
+	/**
+	 * set true to let queries read without flushing the write and delete
+	 * caches, so they may miss adds and removes made shortly before
+	 *
+	 * @param eventualReads
+	 */
+	public void setEventualReads(boolean eventualReads) {
+		this.eventualReads = eventualReads;
+	}
+
+	/**
+	 * return true if queries read without flushing the write and delete caches
+	 *
+	 * @return
+	 */
+	public boolean isEventualReads() {
+		return this.eventualReads;
+	}
+
+	/**
+	 * set true to cache query results, dropped whenever this client or a
+	 * client sharing its cache writes
+	 *
+	 * @param enabled
+	 */
+	public void setQueryResultCacheEnabled(boolean enabled) {
+		if (!enabled) {
+			this.queryResultCache.set(null);
+		} else {
+			this.queryResultCache.compareAndSet(null, new QueryResultCache(QueryResultCache.DEFAULT_MAX_ENTRIES, QueryResultCache.DEFAULT_TTL_MILLIS, QueryResultCache.DEFAULT_MAX_ROWS));
+		}
+	}
+
+	/**
+	 * Configures and enables the query result cache, dropping cached results.
+	 *
+	 * @param maxEntries - results kept
+	 * @param ttlMillis - time (ms) a result is kept
+	 * @param maxRows - rows or statements of the largest result kept
+	 */
+	public void configureQueryResultCache(int maxEntries, long ttlMillis, int maxRows) {
+		this.queryResultCache.set(new QueryResultCache(maxEntries, ttlMillis, maxRows));
+	}
+
+	/**
+	 * getter for the query result cache, null if disabled
+	 *
+	 * @return
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return this.queryResultCache.get();
+	}
+
+	/**
+	 * Makes this client use the query result cache of another, so writes
+	 * through either drop results cached by both, and enabling or
+	 * configuring the cache on one does so for both.
+	 *
+	 * @param other
+	 */
+	public void shareQueryResultCache(MarkLogicClient other) {
+		this.queryResultCache = other.queryResultCache;
+	}
+
+	/**
+	 * Sets the format tuple query results are sent in: SPARQL JSON (the
+	 * default), SPARQL XML, TSV or CSV. CSV drops datatypes and languages
+	 * of literals.
+	 *
+	 * @param tupleResultFormat
+	 */
+	public void setTupleResultFormat(TupleQueryResultFormat tupleResultFormat) {
+		checkTupleResultFormat(tupleResultFormat);
+		this.tupleResultFormat = tupleResultFormat;
+	}
+
+	/**
+	 * getter for the format tuple query results are sent in
+	 *
+	 * @return
+	 */
+	public TupleQueryResultFormat getTupleResultFormat() {
+		return this.tupleResultFormat;
+	}
+
+	/**
+	 * Sets the format graph query results are sent in: N-Triples (the
+	 * default), Turtle, RDF/XML, RDF/JSON or N3.
+	 *
+	 * @param graphResultFormat
+	 */
+	public void setGraphResultFormat(RDFFormat graphResultFormat) {
+		checkGraphResultFormat(graphResultFormat);
+		this.graphResultFormat = graphResultFormat;
+	}
+
+	/**
+	 * getter for the format graph query results are sent in
+	 *
+	 * @return
+	 */
+	public RDFFormat getGraphResultFormat() {
+		return this.graphResultFormat;
+	}
+
+	/**
+	 * Checks that MarkLogic can send tuple results in resultFormat.
+	 *
+	 * @param resultFormat
+	 */
+	public static void checkTupleResultFormat(TupleQueryResultFormat resultFormat) {
+		if (!TUPLE_RESULT_FORMATS.contains(resultFormat)) {
+			throw new IllegalArgumentException("Unsupported tuple result format " + resultFormat + ".");
+		}
+	}
+
+	/**
+	 * Checks that MarkLogic can send graph results in resultFormat.
+	 *
+	 * @param resultFormat
+	 */
+	public static void checkGraphResultFormat(RDFFormat resultFormat) {
+		if (!GRAPH_RESULT_FORMATS.contains(resultFormat)) {
+			throw new IllegalArgumentException("Unsupported graph result format " + resultFormat + ".");
+		}
+	}
+
+	/**
+	 * Sets the executor parsing query results and prefetching result pages
+	 * in the background, by default one shared by every client.
+	 *
+	 * @param parserExecutor
+	 */
+	public void setParserExecutor(ResultParserExecutor parserExecutor) {
+		if (parserExecutor == null) {
+			throw new IllegalArgumentException("Result parser executor must not be null.");
+		}
+		this.parserExecutor = parserExecutor;
+	}
+
+	/**
+	 * getter for the executor parsing query results in the background
+	 *
+	 * @return
+	 */
+	public ResultParserExecutor getParserExecutor() {
+		return this.parserExecutor;
+	}
+
+	/**
+	 * set number of rows or statements parsed ahead of the reader of a result
+	 *
+	 * @param resultQueueDepth
+	 */
+	public void setResultQueueDepth(int resultQueueDepth) {
+		if (resultQueueDepth < 1) {
+			throw new IllegalArgumentException("Result queue depth must be positive.");
+		}
+		this.resultQueueDepth = resultQueueDepth;
+	}
+
+	/**
+	 * getter for number of rows or statements parsed ahead of the reader of a result
+	 *
+	 * @return
+	 */
+	public int getResultQueueDepth() {
+		return this.resultQueueDepth;
+	}
+
+	/**
+	 * set true to parse query results fully on the caller's thread before
+	 * returning them, cheaper than a background parser for small results
+	 *
+	 * @param syncParse
+	 */
+	public void setSyncParse(boolean syncParse) {
+		this.syncParse = syncParse;
+	}
+
+	/**
+	 * return true if query results are parsed on the caller's thread
+	 *
+	 * @return
+	 */
+	public boolean isSyncParse() {
+		return this.syncParse;
+	}
+
+	/**
+	 * Sets where latencies, sizes and counts of requests, parsing and the
+	 * write and delete caches are recorded.
+	 *
+	 * @param metrics - null to record nothing
+	 */
+	public void setMetricsRecorder(MetricsRecorder metrics) {
+		this.metrics = metrics != null ? metrics : MetricsRecorder.NOOP;
+	}
+
+	/**
+	 * getter for the metrics recorder
+	 *
+	 * @return
+	 */
+	public MetricsRecorder getMetricsRecorder() {
+		return this.metrics;
+	}
+
+	/**
+	 * Adds a listener told as each request to the server starts and ends,
+	 * including those of the write and delete caches.
+	 *
+	 * @param listener
+	 */
+	public void addRequestListener(RequestListener listener) {
+		getClient().addRequestListener(listener);
+	}
+
+	/**
+	 * Removes a request listener.
+	 *
+	 * @param listener
+	 */
+	public void removeRequestListener(RequestListener listener) {
+		getClient().removeRequestListener(listener);
+	}
+
+	/**
+	 *  Forces write cache to flush triples, leaving the delete cache alone.
+	 *
+	 * @throws MarkLogicRdf4jException
+	 */
+	void flushWriteCache() throws MarkLogicRdf4jException {
+		if(WRITE_CACHE_ENABLED && timerWriteCache != null)
+			timerWriteCache.forceRun();
+	}
+
+	/**
+	 * set true to batch removes of fully bound statements in the delete cache,
+	 * flushing anything buffered before the caches are rebuilt
+	 *
+	 * @param deleteCacheEnabled
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void setDeleteCacheEnabled(boolean deleteCacheEnabled) throws MarkLogicRdf4jException {
+		sync();
+		this.deleteCacheEnabled = deleteCacheEnabled;
+		initTimer(cacheInitDelay, cacheDelay, cacheSize, cacheBytes);
+	}
+
+	/**
+	 * return true if removes of fully bound statements are batched in the delete cache
+	 *
+	 * @return
+	 */
+	public boolean isDeleteCacheEnabled() {
+		return this.deleteCacheEnabled;
+	}
+
 	/**
 	 * get value factory
 	 *
@@ -208,88 +643,322 @@ public class MarkLogicClient {
 	 */
 	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI) throws RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
+		return sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, null);
+	}
+
+	/**
+	 * TupleQuery with the result sent in resultFormat.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the result, null for the client's
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, TupleQueryResultFormat resultFormat) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, resultFormat, null);
+	}
+
+	/**
+	 * TupleQuery sent with the options of one query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the result, null for the client's
+	 * @param options - options of the request, null for the client's
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, TupleQueryResultFormat resultFormat, RequestOptions options) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		if (resultFormat == null) {
+			resultFormat = this.tupleResultFormat;
+		}
+		if (options == null) {
+			options = getRequestOptions();
+		}
+		QueryResultCache cache = getActiveQueryResultCache();
+		List<Object> key = null;
+		long generation = 0;
+		if (cache != null) {
+			// CSV results lose datatypes, so results are cached per format
+			key = queryKey("tuple", queryString, bindings, includeInferred, baseURI, options, start, pageLength, resultFormat);
+			TupleQueryResult cached = cache.getTupleResult(key);
+			recordCacheLookup(cached != null);
+			if (cached != null) {
+				return cached;
+			}
+			generation = cache.getGeneration();
+		}
 		InputStream stream = null;
+		long begin = System.nanoTime();
+		boolean done = false;
 		try {
-			stream = getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI);
+			stream = getClient().performSPARQLQuery(queryString, bindings, new InputStreamHandle().withMimetype(resultFormat.getDefaultMIMEType()), start, pageLength, this.tx, includeInferred, baseURI, options);
+			done = true;
 		} catch (JsonProcessingException e) {
 			logger.error(e.getLocalizedMessage());
 			throw new MarkLogicRdf4jException("Issue processing json.");
+		} finally {
+			recordRequest("select", begin, done);
 		}
-		TupleQueryResultParser parser = QueryResultIO.createTupleParser(format, getValueFactory());
-		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser,stream);
-		execute(tRes);
-		return tRes;
+		TupleQueryResult tRes = parseTupleResult(metered(stream, "select"), resultFormat);
+		return cache != null ? cache.cacheTupleResult(key, generation, tRes) : tRes;
+	}
+
+	/**
+	 * TupleQuery read in pages of pageLength rows, prefetching while the
+	 * current page is read and holding at most maxPages in memory.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param pageLength
+	 * @param maxPages
+	 * @param includeInferred
+	 * @param baseURI
+	 * @return
+	 * @throws QueryEvaluationException
+	 */
+	public TupleQueryResult sendPagedTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long pageLength, int maxPages, boolean includeInferred, String baseURI) throws QueryEvaluationException {
+		return sendPagedTupleQuery(queryString, bindings, pageLength, maxPages, includeInferred, baseURI, null);
+	}
+
+	/**
+	 * Paged TupleQuery with each page sent in resultFormat.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param pageLength
+	 * @param maxPages
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the pages, null for the client's
+	 * @return
+	 * @throws QueryEvaluationException
+	 */
+	public TupleQueryResult sendPagedTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long pageLength, int maxPages, boolean includeInferred, String baseURI, TupleQueryResultFormat resultFormat) throws QueryEvaluationException {
+		return sendPagedTupleQuery(queryString, bindings, pageLength, maxPages, includeInferred, baseURI, resultFormat, null);
+	}
+
+	/**
+	 * Paged TupleQuery with every page sent with the options of one query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param pageLength
+	 * @param maxPages
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the pages, null for the client's
+	 * @param options - options of the requests, null for the client's
+	 * @return
+	 * @throws QueryEvaluationException
+	 */
+	public TupleQueryResult sendPagedTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long pageLength, int maxPages, boolean includeInferred, String baseURI, TupleQueryResultFormat resultFormat, RequestOptions options) throws QueryEvaluationException {
+		return new PagedTupleQueryResult(this, queryString, bindings, pageLength, maxPages, includeInferred, baseURI, resultFormat, options != null ? options : getRequestOptions());
+	}
+
+	/**
+	 * GraphQuery
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, MarkLogicRdf4jException {
+		return sendGraphQuery(queryString, bindings, includeInferred, baseURI, null);
+	}
+
+	/**
+	 * GraphQuery with the result sent in resultFormat.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the result, null for the client's
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RDFFormat resultFormat) throws IOException, MarkLogicRdf4jException {
+		return sendGraphQuery(queryString, bindings, includeInferred, baseURI, resultFormat, null);
+	}
+
+	/**
+	 * GraphQuery sent with the options of one query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param resultFormat - format of the result, null for the client's
+	 * @param options - options of the request, null for the client's
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RDFFormat resultFormat, RequestOptions options) throws IOException, MarkLogicRdf4jException {
+		if (resultFormat == null) {
+			resultFormat = this.graphResultFormat;
+		}
+		if (options == null) {
+			options = getRequestOptions();
+		}
+		QueryResultCache cache = getActiveQueryResultCache();
+		List<Object> key = null;
+		long generation = 0;
+		if (cache != null) {
+			key = queryKey("graph", queryString, bindings, includeInferred, baseURI, options);
+			GraphQueryResult cached = cache.getGraphResult(key);
+			recordCacheLookup(cached != null);
+			if (cached != null) {
+				return cached;
+			}
+			generation = cache.getGeneration();
+		}
+		InputStream stream;
+		long begin = System.nanoTime();
+		boolean done = false;
+		try {
+			stream = metered(getClient().performGraphQuery(queryString, bindings, new InputStreamHandle().withMimetype(resultFormat.getDefaultMIMEType()), this.tx, includeInferred, baseURI, options), "construct");
+			done = true;
+		} finally {
+			recordRequest("construct", begin, done);
+		}
+
+		RDFParser parser = Rio.createParser(resultFormat, getValueFactory());
+		parser.setParserConfig(getParserConfig());
+		parser.setParseErrorListener(new ParseErrorLogger());
+		parser.setPreserveBNodeIDs(true);
+
+		// fixup - baseURI cannot be null
+		GraphQueryResult gRes = parseGraphResult(parser, stream, baseURI != null ? baseURI : "");
+		return cache != null ? cache.cacheGraphResult(key, generation, gRes) : gRes;
+	}
+
+	/**
+	 * BooleanQuery
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @return
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UnauthorizedException
+	 * @throws QueryInterruptedException
+	 */
+	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendBooleanQuery(queryString, bindings, includeInferred, baseURI, null);
 	}
 
 	/**
-	 * GraphQuery
+	 * BooleanQuery sent with the options of one query.
 	 *
 	 * @param queryString
 	 * @param bindings
 	 * @param includeInferred
 	 * @param baseURI
+	 * @param options - options of the request, null for the client's
 	 * @return
 	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
 	 */
-	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, MarkLogicRdf4jException {
-		InputStream stream = getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI);
-
-		RDFParser parser = Rio.createParser(rdfFormat, getValueFactory());
-		parser.setParserConfig(getParserConfig());
-		parser.setParseErrorListener(new ParseErrorLogger());
-		parser.setPreserveBNodeIDs(true);
-
-		MarkLogicBackgroundGraphResult gRes;
-
-		// fixup - baseURI cannot be null
-		if(baseURI != null){
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,baseURI);
-		}else{
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,"");
+	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RequestOptions options) throws IOException, RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		if (options == null) {
+			options = getRequestOptions();
 		}
+		QueryResultCache cache = getActiveQueryResultCache();
+		if (cache == null) {
+			return performBooleanQuery(queryString, bindings, includeInferred, baseURI, options);
+		}
+		List<Object> key = queryKey("boolean", queryString, bindings, includeInferred, baseURI, options);
+		Boolean cached = cache.getBooleanResult(key);
+		recordCacheLookup(cached != null);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = cache.getGeneration();
+		return cache.cacheBooleanResult(key, generation, performBooleanQuery(queryString, bindings, includeInferred, baseURI, options));
+	}
 
-		execute(gRes);
-		return gRes;
+	private boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RequestOptions options) {
+		long begin = System.nanoTime();
+		boolean done = false;
+		try {
+			boolean result = getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI, options);
+			done = true;
+			return result;
+		} finally {
+			recordRequest("ask", begin, done);
+		}
 	}
 
 	/**
-	 * BooleanQuery
+	 * UpdateQuery
 	 *
 	 * @param queryString
 	 * @param bindings
 	 * @param includeInferred
 	 * @param baseURI
-	 * @return
 	 * @throws IOException
 	 * @throws RepositoryException
 	 * @throws MalformedQueryException
 	 * @throws UnauthorizedException
-	 * @throws QueryInterruptedException
+	 * @throws UpdateExecutionException
 	 */
-	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,
-			QueryInterruptedException {
-		return getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
+		sendUpdateQuery(queryString, bindings, includeInferred, baseURI, null);
 	}
 
 	/**
-	 * UpdateQuery
+	 * UpdateQuery sent with the options of one query.
 	 *
 	 * @param queryString
 	 * @param bindings
 	 * @param includeInferred
 	 * @param baseURI
+	 * @param options - options of the request, null for the client's
 	 * @throws IOException
 	 * @throws RepositoryException
 	 * @throws MalformedQueryException
-	 * @throws UnauthorizedException
 	 * @throws UpdateExecutionException
 	 */
-	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
-		getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RequestOptions options) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
+		long begin = System.nanoTime();
+		boolean done = false;
+		try {
+			getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI, options != null ? options : getRequestOptions());
+			done = true;
+		} finally {
+			recordRequest("update", begin, done);
+		}
+		invalidateQueryResults();
 	}
 
 	/**
-	 * Add triples from file.
+	 * Add triples from file, flushing the write and delete caches first.
 	 *
 	 * @param file
 	 * @param baseURI
@@ -298,17 +967,13 @@ public class MarkLogicClient {
 	 * @throws RDFParseException
 	 */
 	public void sendAdd(File file, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException {
-        if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
-        }
-        else
-        {
-            throw new MarkLogicRdf4jException("Unsupported RDF format.");
-        }
+		beginRawAdd(dataFormat);
+		getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+		invalidateQueryResults();
 	}
 
 	/**
-	 * Add triples from InputStream.
+	 * Add triples from InputStream, flushing the write and delete caches first.
 	 *
 	 * @param in
 	 * @param baseURI
@@ -316,17 +981,168 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
-        if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
-        }
-        else
-        {
-            throw new MarkLogicRdf4jException("Unsupported RDF format.");
-        }
+		beginRawAdd(dataFormat);
+		getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+		invalidateQueryResults();
+	}
+
+	/**
+	 * Bulk load triples from InputStream, in chunks uploaded concurrently,
+	 * flushing the write and delete caches first.
+	 *
+	 * @param in
+	 * @param baseURI
+	 * @param dataFormat
+	 * @param listener - progress listener, may be null
+	 * @param contexts
+	 * @return number of statements loaded
+	 * @throws RDFParseException
+	 * @throws MarkLogicRdf4jException
+	 */
+	public long sendBulkAdd(InputStream in, String baseURI, RDFFormat dataFormat, BulkLoadListener listener, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
+		beginRawAdd(dataFormat);
+		return new TripleBulkLoader(this, bulkChunkSize, bulkThreads, listener).load(in, baseURI, dataFormat, contexts);
+	}
+
+	/**
+	 * Read a graph as serialized by the server, flushing pending writes
+	 * to it first; the caller must close the stream.
+	 *
+	 * @param context - graph, null for the default graph
+	 * @param dataFormat
+	 * @return
+	 * @throws MarkLogicRdf4jException
+	 */
+	public InputStream sendReadGraph(Resource context, RDFFormat dataFormat) throws MarkLogicRdf4jException {
+		if (isCacheDirty(Collections.singleton(context))) {
+			sync();
+		}
+		return getClient().performReadGraph(context, dataFormat, this.tx);
+	}
+
+	/**
+	 * Export graphs one after another to a stream, copying the server's
+	 * serialization without parsing it.
+	 *
+	 * @param out
+	 * @param dataFormat
+	 * @param contexts - graphs, null for the default graph
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void sendExport(OutputStream out, RDFFormat dataFormat, Resource... contexts) throws MarkLogicRdf4jException {
+		if(!util.isFormatSupported(dataFormat)) {
+			throw new MarkLogicRdf4jException("Unsupported RDF format.");
+		}
+		new GraphExporter(this, dataFormat).export(out, contexts);
+	}
+
+	/**
+	 * Export graphs concurrently, each to its own stream.
+	 *
+	 * @param target - supplies the stream of each graph
+	 * @param dataFormat
+	 * @param threads - graphs exported concurrently
+	 * @param contexts - graphs, null for the default graph
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void sendExport(GraphExportTarget target, RDFFormat dataFormat, int threads, Resource... contexts) throws MarkLogicRdf4jException {
+		if(!util.isFormatSupported(dataFormat)) {
+			throw new MarkLogicRdf4jException("Unsupported RDF format.");
+		}
+		new GraphExporter(this, dataFormat).export(target, threads, contexts);
+	}
+
+	/**
+	 * Configures bulk loads.
+	 *
+	 * @param chunkSize - statements per chunk
+	 * @param threads - chunks uploaded concurrently
+	 */
+	public void configureBulkLoad(int chunkSize, int threads) {
+		if (chunkSize < 1 || threads < 1) {
+			throw new IllegalArgumentException("Bulk load needs a positive chunk size and thread count.");
+		}
+		this.bulkChunkSize = chunkSize;
+		this.bulkThreads = threads;
+	}
+
+	/**
+	 * set true to write cached and bulk loaded triples as managed triples
+	 * documents through a Data Movement SDK WriteBatcher, spread across every
+	 * host of the cluster. Writes inside a transaction still go through the
+	 * REST host.
+	 *
+	 * @param enabled
+	 * @throws MarkLogicRdf4jException
+	 */
+	public synchronized void setDocumentIngestion(boolean enabled) throws MarkLogicRdf4jException {
+		if (enabled == (documentWriter != null)) {
+			return;
+		}
+		sync();
+		if (enabled) {
+			documentWriter = new TripleDocumentWriter(getClient().getDatabaseClient(), documentBatchSize, documentThreads, TripleDocumentWriter.DEFAULT_RETRIES);
+		} else {
+			documentWriter.stop();
+			documentWriter = null;
+		}
+	}
+
+	/**
+	 * return true if triples are written as documents through a WriteBatcher
+	 *
+	 * @return
+	 */
+	public boolean isDocumentIngestion() {
+		return documentWriter != null;
+	}
+
+	/**
+	 * Configures document ingestion, restarting it if enabled.
+	 *
+	 * @param batchSize - documents per batch
+	 * @param threadCount - batches written concurrently
+	 * @throws MarkLogicRdf4jException
+	 */
+	public synchronized void configureDocumentIngestion(int batchSize, int threadCount) throws MarkLogicRdf4jException {
+		if (batchSize < 1 || threadCount < 1) {
+			throw new IllegalArgumentException("Document ingestion needs a positive batch size and thread count.");
+		}
+		this.documentBatchSize = batchSize;
+		this.documentThreads = threadCount;
+		if (documentWriter != null) {
+			setDocumentIngestion(false);
+			setDocumentIngestion(true);
+		}
+	}
+
+	/**
+	 * return true if buffered triples can be written as documents, which
+	 * can't take part in a transaction
+	 *
+	 * @return
+	 */
+	boolean canWriteDocuments() {
+		return documentWriter != null && !isActiveTransaction();
+	}
+
+	/**
+	 * Write buffered triples as managed triples documents, waiting until written.
+	 *
+	 * @param buffer
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void sendAddDocuments(TripleBuffer buffer) throws MarkLogicRdf4jException {
+		TripleDocumentWriter writer = documentWriter;
+		if (writer == null) {
+			throw new MarkLogicRdf4jException("Document ingestion is not enabled.");
+		}
+		writer.flush(writer.write(buffer, getGraphPerms()));
+		invalidateQueryResults();
 	}
 
 	/**
-	 * Add triples from Reader.
+	 * Add triples from Reader, flushing the write and delete caches first.
 	 *
 	 * @param in
 	 * @param baseURI
@@ -334,14 +1150,35 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(Reader in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
-        if(util.isFormatSupported(dataFormat)) {
-            //TBD- must deal with char encoding
-            getClient().performAdd(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, this.tx, contexts);
-        }
-        else
-        {
-            throw new MarkLogicRdf4jException("Unsupported RDF format.");
-        }
+		beginRawAdd(dataFormat);
+		//TBD- must deal with char encoding
+		getClient().performAdd(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, this.tx, contexts);
+		invalidateQueryResults();
+	}
+
+	/**
+	 * Checks the format of an add sent straight to the server, bypassing the
+	 * write cache, and flushes the write and delete caches so that buffered
+	 * removes of the same triples are not flushed after it.
+	 *
+	 * @param dataFormat
+	 * @throws MarkLogicRdf4jException
+	 */
+	private void beginRawAdd(RDFFormat dataFormat) throws MarkLogicRdf4jException {
+		if (!util.isFormatSupported(dataFormat)) {
+			throw new MarkLogicRdf4jException("Unsupported RDF format.");
+		}
+		sync();
+	}
+
+	/**
+	 * Add buffered triples, streamed to the server as N-Quads.
+	 *
+	 * @param buffer
+	 */
+	public void sendAdd(TripleBuffer buffer) throws MarkLogicRdf4jException {
+		getClient().performAdd(buffer, this.tx);
+		invalidateQueryResults();
 	}
 
 	/**
@@ -354,15 +1191,23 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+		Resource s = (Resource) util.skolemize(subject);
+		IRI p = (IRI) util.skolemize(predicate);
+		Value o = util.skolemize(object);
 		if (WRITE_CACHE_ENABLED) {
-			timerWriteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
+			if (deleteCacheEnabled && timerDeleteCache != null && timerDeleteCache.reconcileAdd(s, p, o, contexts)) {
+				timerDeleteCache.forceRun();
+			}
+			timerWriteCache.add(s, p, o, contexts);
 		} else {
-			getClient().performAdd(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			getClient().performAdd(baseURI, s, p, o, this.tx, contexts);
+			invalidateQueryResults();
 		}
 	}
 
 	/**
-	 * Remove single triple.
+	 * Remove single triple, if delete cache is enabled and the triple is fully
+	 * bound will add triple to delete cache model, cancelling any buffered add.
 	 *
 	 * @param baseURI
 	 * @param subject
@@ -371,13 +1216,83 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendRemove(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
-		if (DELETE_CACHE_ENABLED) {
-			timerDeleteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
+		Resource s = (Resource) util.skolemize(subject);
+		IRI p = (IRI) util.skolemize(predicate);
+		Value o = util.skolemize(object);
+		if (deleteCacheEnabled && timerDeleteCache != null && baseURI == null && s != null && p != null && o != null) {
+			if (WRITE_CACHE_ENABLED && timerWriteCache != null) {
+				timerWriteCache.discard(s, p, o, contexts);
+			}
+			if (contexts.length == 0) {
+				timerDeleteCache.add(s, p, o, TripleDeleteCache.ALL_GRAPHS);
+			} else {
+				timerDeleteCache.add(s, p, o, contexts);
+			}
 		} else {
-			if (WRITE_CACHE_ENABLED)
-				sync();
-			getClient().performRemove(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			sync();
+			getClient().performRemove(baseURI, s, p, o, this.tx, contexts);
+			invalidateQueryResults();
+		}
+	}
+
+	/**
+	 * Remove many triples, in chunks of the cache size. Fully bound triples of a
+	 * chunk are sent as DELETE DATA grouped by graph and triples with wildcards
+	 * as DELETE WHERE operations of the same update request.
+	 *
+	 * @param statements triples to remove
+	 * @param useStatementContext if true and no contexts are given, remove each
+	 *                            triple from its own context
+	 * @param contexts
+	 * @param <E>
+	 * @throws MarkLogicRdf4jException
+	 * @throws E
+	 */
+	public <E extends Exception> void sendRemove(Iteration<? extends Statement, E> statements, boolean useStatementContext, Resource... contexts) throws MarkLogicRdf4jException, E {
+		TripleBuffer chunk = new TripleBuffer();
+		List<Value[]> patterns = new ArrayList<>();
+		while (statements.hasNext()) {
+			Statement st = statements.next();
+			Resource s = (Resource) util.skolemize(st.getSubject());
+			IRI p = (IRI) util.skolemize(st.getPredicate());
+			Value o = util.skolemize(st.getObject());
+			Resource[] ctxs = contexts;
+			if (ctxs.length == 0 && useStatementContext && st.getContext() != null) {
+				ctxs = new Resource[] { st.getContext() };
+			}
+			if (WRITE_CACHE_ENABLED && timerWriteCache != null) {
+				timerWriteCache.discard(s, p, o, ctxs);
+			}
+			Resource[] graphs = ctxs.length == 0 ? new Resource[] { TripleDeleteCache.ALL_GRAPHS } : ctxs;
+			for (Resource graph : graphs) {
+				if (s != null && p != null && o != null) {
+					chunk.add(s, p, o, graph);
+				} else {
+					patterns.add(new Value[] { s, p, o, graph });
+				}
+			}
+			if (chunk.size() + patterns.size() >= cacheSize) {
+				sendRemoveChunk(chunk, patterns);
+			}
+		}
+		sendRemoveChunk(chunk, patterns);
+	}
+
+	private void sendRemoveChunk(TripleBuffer chunk, List<Value[]> patterns) throws MarkLogicRdf4jException {
+		if (chunk.isEmpty() && patterns.isEmpty()) {
+			return;
 		}
+		// earlier adds and removes must reach the server first
+		sync();
+		try {
+			String query = TripleDeleteCache.toDeleteQuery(chunk, patterns);
+			logger.debug(query);
+			sendUpdateQuery(query, new SPARQLQueryBindingSet(), false, null);
+		} catch (IOException e) {
+			throw new MarkLogicRdf4jException(e);
+		}
+		chunk.clear();
+		patterns.clear();
 	}
 
 	/**
@@ -386,7 +1301,9 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendClear(Resource... contexts) throws MarkLogicRdf4jException {
+		sync();
 		getClient().performClear(this.tx, contexts);
+		invalidateQueryResults();
 	}
 
 	/**
@@ -394,7 +1311,9 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void sendClearAll() throws MarkLogicRdf4jException {
+		sync();
 		getClient().performClearAll(this.tx);
+		invalidateQueryResults();
 	}
 
 	/**
@@ -405,7 +1324,7 @@ public class MarkLogicClient {
 	public void openTransaction() throws MarkLogicTransactionException {
 		if (!isActiveTransaction()) {
 			try {
-                this.tx = getClient().getDatabaseClient().openTransaction();
+                this.tx = getClient().performOpenTransaction();
             }
             catch (ForbiddenUserException e)
             {
@@ -425,8 +1344,9 @@ public class MarkLogicClient {
 		if (isActiveTransaction()) {
 			try {
 				sync();
-				this.tx.commit();
+				getClient().performCommit(this.tx);
 				this.tx=null;
+				invalidateQueryResults();
 			} catch (MarkLogicRdf4jException e) {
 				logger.error(e.getLocalizedMessage());
 				throw new MarkLogicTransactionException(e);
@@ -448,8 +1368,9 @@ public class MarkLogicClient {
 			} catch (MarkLogicRdf4jException e) {
 				throw new MarkLogicTransactionException(e);
 			}
-			this.tx.rollback();
+			getClient().performRollback(this.tx);
 			this.tx = null;
+			invalidateQueryResults();
 		}else{
 			throw new MarkLogicTransactionException("No active transaction to rollback.");
 		}
@@ -505,22 +1426,32 @@ public class MarkLogicClient {
 	 * @param rulesets
 	 */
 	public void setRulesets(SPARQLRuleset... rulesets){
+		getClient().setRulesets(withDefaultRulesets(rulesets));
+	}
+
+	/**
+	 * Adds the default rulesets to rulesets.
+	 *
+	 * @param rulesets
+	 * @return
+	 */
+	public SPARQLRuleset[] withDefaultRulesets(SPARQLRuleset... rulesets){
 	    if(this.defaultRulesets != null)
         {
             if(rulesets != null)
             {
                 SPARQLRuleset[] resultantRuleset = Arrays.copyOf(rulesets, rulesets.length + defaultRulesets.length);
                 System.arraycopy(defaultRulesets, 0, resultantRuleset, rulesets.length, defaultRulesets.length);
-                getClient().setRulesets(resultantRuleset);
+                return resultantRuleset;
             }
             else
             {
-                getClient().setRulesets(this.defaultRulesets);
+                return this.defaultRulesets;
             }
         }
         else
         {
-            getClient().setRulesets(rulesets);
+            return rulesets;
         }
 	}
 
@@ -546,6 +1477,15 @@ public class MarkLogicClient {
         return getClient().getOptimizeLevel();
     }
 
+	/**
+	 * getter for the options requests are sent with unless a query has its own
+	 *
+	 * @return
+	 */
+	public RequestOptions getRequestOptions() {
+		return getClient().getRequestOptions();
+	}
+
     public void setOptimizeLevel(Integer optimizeLevel) {
         getClient().setOptimizeLevel(optimizeLevel);
     }
@@ -591,16 +1531,174 @@ public class MarkLogicClient {
 		return getClient().getGraphPerms();
 	}
 
+	/**
+	 * Checks if any graph permissions are set.
+	 *
+	 * @return boolean
+	 */
+	public boolean hasGraphPerms(){
+		GraphPermissions graphPerms = getGraphPerms();
+		return graphPerms != null && !graphPerms.isEmpty();
+	}
+
 	public GraphPermissions emptyGraphPerms(){
 		return _client.getDatabaseClient().newGraphManager().newGraphPermissions();
 	}
 
 	/**
-	 * Execute command.
+	 * Returns the query result cache if results can be cached, which they
+	 * can't inside a transaction.
+	 *
+	 * @return
+	 */
+	private QueryResultCache getActiveQueryResultCache() {
+		return isActiveTransaction() ? null : this.queryResultCache.get();
+	}
+
+	/**
+	 * Drops cached query results after a write.
+	 */
+	private void invalidateQueryResults() {
+		QueryResultCache cache = this.queryResultCache.get();
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	/**
+	 * Builds the query result cache key of a request. The constraining query
+	 * is compared by identity.
+	 *
+	 * @return
+	 */
+	private List<Object> queryKey(String type, String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RequestOptions options, Object... paging) {
+		Map<String, Value> values = new HashMap<>();
+		if (bindings != null) {
+			for (Binding binding : bindings) {
+				values.put(binding.getName(), binding.getValue());
+			}
+		}
+		List<String> rulesets = new ArrayList<>();
+		SPARQLRuleset[] active = options.getRulesets();
+		if (active != null) {
+			for (SPARQLRuleset ruleset : active) {
+				rulesets.add(ruleset == null ? null : ruleset.getName());
+			}
+		}
+		return Arrays.asList(type, queryString, values, rulesets, options.getConstrainingQueryDefinition(),
+				includeInferred, baseURI, options.getOptimizeLevel(), Arrays.asList(paging));
+	}
+
+	/**
+	 * Records the latency of a request, and counts it if it failed.
+	 *
+	 * @param operation - select, construct, ask or update
+	 * @param begin - System.nanoTime() as the request was sent
+	 * @param done - false if the request failed
+	 */
+	private void recordRequest(String operation, long begin, boolean done) {
+		MetricsRecorder metrics = this.metrics;
+		if (metrics == MetricsRecorder.NOOP) {
+			return;
+		}
+		metrics.recordTime(operation + ".latency", System.nanoTime() - begin);
+		if (!done) {
+			metrics.increment(operation + ".errors");
+		}
+	}
+
+	private void recordCacheLookup(boolean hit) {
+		metrics.increment(hit ? "querycache.hits" : "querycache.misses");
+	}
+
+	/**
+	 * Wraps a result to record its size and how long it took to read once
+	 * it is read to the end or closed; left as is if nothing is recorded.
+	 *
+	 * @param stream
+	 * @param operation - select or construct
+	 * @return
+	 */
+	private InputStream metered(InputStream stream, String operation) {
+		MetricsRecorder metrics = this.metrics;
+		if (metrics == MetricsRecorder.NOOP || stream == null) {
+			return stream;
+		}
+		return new MeteredInputStream(stream, metrics, operation);
+	}
+
+	/**
+	 * Runs command on a free result parser thread.
+	 *
 	 * @param command
+	 * @return false if every parser thread is busy and command was not run
+	 */
+	protected boolean tryExecute(Runnable command) {
+		return parserExecutor.tryExecute(command);
+	}
+
+	/**
+	 * Parses a tuple result in the background, or fully on the caller's
+	 * thread if parsing is synchronous or every parser thread is busy.
+	 */
+	private TupleQueryResult parseTupleResult(InputStream stream, TupleQueryResultFormat resultFormat) throws QueryEvaluationException {
+		TupleQueryResultParser parser = resultFormat.equals(TupleQueryResultFormat.JSON)
+				? new SPARQLJSONTupleParser(getValueDecoder())
+				: QueryResultIO.createTupleParser(resultFormat, getValueFactory());
+		if (!syncParse) {
+			MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(new QueueCursor<BindingSet>(resultQueueDepth), parser, stream);
+			metrics.recordAmount("parser.active", parserExecutor.getActiveCount());
+			if (tryExecute(tRes)) {
+				return tRes;
+			}
+			metrics.increment("parser.inline");
+			logger.debug("parser threads busy, parsing tuple result on caller thread");
+		}
+		TupleQueryResultBuilder builder = new TupleQueryResultBuilder();
+		parser.setQueryResultHandler(builder);
+		try (InputStream in = stream) {
+			parser.parseQueryResult(in);
+		} catch (IOException | QueryResultParseException | QueryResultHandlerException e) {
+			throw new QueryEvaluationException(e.getMessage(), e);
+		}
+		return builder.getQueryResult();
+	}
+
+	/**
+	 * Returns the decoder of tuple result values, sharing interned IRIs
+	 * across results until the value factory changes.
+	 */
+	private ValueDecoder getValueDecoder() {
+		ValueDecoder decoder = this.valueDecoder;
+		if (decoder == null || decoder.getValueFactory() != getValueFactory()) {
+			decoder = new ValueDecoder(getValueFactory());
+			this.valueDecoder = decoder;
+		}
+		return decoder;
+	}
+
+	/**
+	 * Parses a graph result in the background, or fully on the caller's
+	 * thread if parsing is synchronous or every parser thread is busy.
 	 */
-	protected void execute(Runnable command) {
-		executor.execute(command);
+	private GraphQueryResult parseGraphResult(RDFParser parser, InputStream stream, String baseURI) throws QueryEvaluationException {
+		if (!syncParse) {
+			MarkLogicBackgroundGraphResult gRes = new MarkLogicBackgroundGraphResult(new QueueCursor<Statement>(resultQueueDepth), parser, stream, charset, baseURI);
+			metrics.recordAmount("parser.active", parserExecutor.getActiveCount());
+			if (tryExecute(gRes)) {
+				return gRes;
+			}
+			metrics.increment("parser.inline");
+			logger.debug("parser threads busy, parsing graph result on caller thread");
+		}
+		StatementCollector collector = new StatementCollector();
+		parser.setRDFHandler(collector);
+		try (InputStream in = stream) {
+			parser.parse(new InputStreamReader(in, charset), baseURI);
+		} catch (IOException | RDFParseException | RDFHandlerException e) {
+			throw new QueryEvaluationException(e.getMessage(), e);
+		}
+		return new IteratingGraphQueryResult(collector.getNamespaces(), collector.getStatements());
 	}
 
 	/**
@@ -619,6 +1717,10 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void close() {
+		if (documentWriter != null) {
+			documentWriter.stop();
+			documentWriter = null;
+		}
 		_client.close();
 	}
 	/**
@@ -627,4 +1729,68 @@ public class MarkLogicClient {
 	public void release() {
 		_client.release();
 	}
+
+	/**
+	 * Counts the bytes of a result, recording them and the time taken to
+	 * read them once, at the end of the stream or as it is closed.
+	 */
+	private static final class MeteredInputStream extends FilterInputStream {
+
+		private final MetricsRecorder metrics;
+		private final String operation;
+		private final long begin = System.nanoTime();
+		private long bytes = 0;
+		private boolean recorded = false;
+
+		MeteredInputStream(InputStream in, MetricsRecorder metrics, String operation) {
+			super(in);
+			this.metrics = metrics;
+			this.operation = operation;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				record();
+			} else {
+				bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buf, int off, int len) throws IOException {
+			int n = super.read(buf, off, len);
+			if (n < 0) {
+				record();
+			} else {
+				bytes += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			bytes += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			record();
+			super.close();
+		}
+
+		private synchronized void record() {
+			if (!recorded) {
+				recorded = true;
+				metrics.recordAmount(operation + ".bytes", bytes);
+				metrics.recordTime(operation + ".read", System.nanoTime() - begin);
+			}
+		}
+
+	}
+
 }
\ No newline at end of file
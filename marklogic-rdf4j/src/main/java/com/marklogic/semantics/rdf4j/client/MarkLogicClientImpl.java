@@ -20,24 +20,35 @@
 package com.marklogic.semantics.rdf4j.client;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +60,7 @@ import com.marklogic.client.Transaction;
 import com.marklogic.client.impl.SPARQLBindingsImpl;
 import com.marklogic.client.io.FileHandle;
 import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.OutputStreamHandle;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphManager;
 import com.marklogic.client.semantics.GraphPermissions;
@@ -70,10 +82,12 @@ public class MarkLogicClientImpl {
 
     private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
 
-    private SPARQLRuleset[] ruleset;
-    private Integer optimizeLevel;
-    private QueryDefinition constrainingQueryDef;
-    private GraphPermissions graphPerms;
+    private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    private static final IRI DEFAULT_GRAPH = vf.createIRI(DEFAULT_GRAPH_URI);
+
+    // replaced, never changed, so a request reads one consistent set of options
+    private volatile RequestOptions options = RequestOptions.DEFAULT;
 
     private SPARQLQueryManager sparqlManager;
     private GraphManager graphManager;
@@ -82,6 +96,8 @@ public class MarkLogicClientImpl {
 
     private Util util = Util.getInstance();
 
+    private final List<RequestListener> listeners = new CopyOnWriteArrayList<>();
+
     /**
      * Constructor initialized with connection parameters.
      *
@@ -156,26 +172,53 @@ public class MarkLogicClientImpl {
      * @throws JsonProcessingException
      */
     public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred){qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())) {
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        }
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        if(pageLength > 0){
-            sparqlManager.setPageLength(pageLength);
-        }else{
-            sparqlManager.clearPageLength();
-        }
-        sparqlManager.executeSelect(qdef, handle, start, tx);
-        return new BufferedInputStream(handle.get());
+        return performSPARQLQuery(queryString, bindings, handle, start, pageLength, tx, includeInferred, baseURI, this.options);
+    }
+
+    /**
+     * Executes SPARQLQuery with InputStreamHandle and request options.
+     *
+     * @param queryString
+     * @param bindings
+     * @param handle
+     * @param start
+     * @param pageLength
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @param options
+     * @return
+     * @throws JsonProcessingException
+     */
+    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI, RequestOptions options) throws JsonProcessingException {
+        return request(RequestEvent.Operation.SELECT, queryString, countBindings(bindings), event -> {
+            SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+            if (Util.notNull(bindings) && bindings.size() > 0) { qdef.setBindings(getSPARQLBindings(bindings)); }
+            if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+            if (Util.notNull(options.getRulesets()) && includeInferred){qdef.setRulesets(options.getRulesets());}
+            if (Util.notNull(options.getConstrainingQueryDefinition())) {
+            	qdef.setConstrainingQueryDefinition(options.getConstrainingQueryDefinition());
+                qdef.setDirectory(options.getConstrainingQueryDefinition().getDirectory());
+                qdef.setCollections(options.getConstrainingQueryDefinition().getCollections());
+                qdef.setResponseTransform(options.getConstrainingQueryDefinition().getResponseTransform());
+                qdef.setOptionsName(options.getConstrainingQueryDefinition().getOptionsName());
+            }
+            qdef.setIncludeDefaultRulesets(includeInferred);
+            if(Util.notNull(options.getGraphPerms())){ qdef.setUpdatePermissions(options.getGraphPerms());}
+            if (Util.notNull(options.getOptimizeLevel())){ qdef.setOptimizeLevel(options.getOptimizeLevel()); }
+            if(pageLength > 0){
+                // page length is manager state, so paged selects that may run
+                // concurrently each get their own manager
+                SPARQLQueryManager pagedManager = getDatabaseClient().newSPARQLQueryManager();
+                pagedManager.setPageLength(pageLength);
+                pagedManager.executeSelect(qdef, handle, start, tx);
+            }else{
+                sparqlManager.clearPageLength();
+                sparqlManager.executeSelect(qdef, handle, start, tx);
+            }
+            if (event != null) { event.setBytes(handle.getByteLength()); }
+            return new BufferedInputStream(handle.get());
+        });
     }
 
     /**
@@ -205,21 +248,42 @@ public class MarkLogicClientImpl {
      * @throws JsonProcessingException
      */
     public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException  {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if (Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.executeDescribe(qdef, handle, tx);
-        return new BufferedInputStream(handle.get());
+        return performGraphQuery(queryString, bindings, handle, tx, includeInferred, baseURI, this.options);
+    }
+
+    /**
+     * Executes GraphQuery with InputStreamHandle and request options.
+     *
+     * @param queryString
+     * @param bindings
+     * @param handle
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @param options
+     * @return
+     * @throws JsonProcessingException
+     */
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI, RequestOptions options) throws JsonProcessingException  {
+        return request(RequestEvent.Operation.CONSTRUCT, queryString, countBindings(bindings), event -> {
+            SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+            if (Util.notNull(bindings) && bindings.size() > 0) { qdef.setBindings(getSPARQLBindings(bindings)); }
+            if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+            if (Util.notNull(options.getRulesets()) && includeInferred) {qdef.setRulesets(options.getRulesets());}
+            if (Util.notNull(options.getConstrainingQueryDefinition())){
+            	qdef.setConstrainingQueryDefinition(options.getConstrainingQueryDefinition());
+                qdef.setDirectory(options.getConstrainingQueryDefinition().getDirectory());
+                qdef.setCollections(options.getConstrainingQueryDefinition().getCollections());
+                qdef.setResponseTransform(options.getConstrainingQueryDefinition().getResponseTransform());
+                qdef.setOptionsName(options.getConstrainingQueryDefinition().getOptionsName());
+            	}
+            if (Util.notNull(options.getGraphPerms())){ qdef.setUpdatePermissions(options.getGraphPerms());}
+            if (Util.notNull(options.getOptimizeLevel())){ qdef.setOptimizeLevel(options.getOptimizeLevel()); }
+            qdef.setIncludeDefaultRulesets(includeInferred);
+            sparqlManager.executeDescribe(qdef, handle, tx);
+            if (event != null) { event.setBytes(handle.getByteLength()); }
+            return new BufferedInputStream(handle.get());
+        });
     }
 
     /**
@@ -233,20 +297,38 @@ public class MarkLogicClientImpl {
      * @return
      */
     public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        return sparqlManager.executeAsk(qdef,tx);
+        return performBooleanQuery(queryString, bindings, tx, includeInferred, baseURI, this.options);
+    }
+
+    /**
+     * Executes BooleanQuery with request options.
+     *
+     * @param queryString
+     * @param bindings
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @param options
+     * @return
+     */
+    public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI, RequestOptions options) {
+        return request(RequestEvent.Operation.ASK, queryString, countBindings(bindings), event -> {
+            SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+            if (Util.notNull(bindings) && bindings.size() > 0) { qdef.setBindings(getSPARQLBindings(bindings)); }
+            if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+            qdef.setIncludeDefaultRulesets(includeInferred);
+            if (Util.notNull(options.getOptimizeLevel())){ qdef.setOptimizeLevel(options.getOptimizeLevel()); }
+            if (Util.notNull(options.getRulesets()) && includeInferred) {qdef.setRulesets(options.getRulesets());}
+            if (Util.notNull(options.getConstrainingQueryDefinition())){
+            	qdef.setConstrainingQueryDefinition(options.getConstrainingQueryDefinition());
+                qdef.setDirectory(options.getConstrainingQueryDefinition().getDirectory());
+                qdef.setCollections(options.getConstrainingQueryDefinition().getCollections());
+                qdef.setResponseTransform(options.getConstrainingQueryDefinition().getResponseTransform());
+                qdef.setOptionsName(options.getConstrainingQueryDefinition().getOptionsName());
+            	}
+            if(Util.notNull(options.getGraphPerms())){ qdef.setUpdatePermissions(options.getGraphPerms());}
+            return sparqlManager.executeAsk(qdef,tx);
+        });
     }
 
     /**
@@ -259,20 +341,38 @@ public class MarkLogicClientImpl {
      * @param baseURI
      */
     public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){qdef.setOptimizeLevel(optimizeLevel);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.clearPageLength();
-        try {
-            sparqlManager.executeUpdate(qdef, tx);
-        }
-        catch (ForbiddenUserException e)
-        {
-            throw new RepositoryException(e.getMessage());
-        }
+        performUpdateQuery(queryString, bindings, tx, includeInferred, baseURI, this.options);
+    }
+
+    /**
+     * Executes UpdateQuery with request options.
+     *
+     * @param queryString
+     * @param bindings
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @param options
+     */
+    public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI, RequestOptions options) {
+        request(RequestEvent.Operation.UPDATE, queryString, countBindings(bindings), event -> {
+            SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+            if (Util.notNull(bindings) && bindings.size() > 0) { qdef.setBindings(getSPARQLBindings(bindings)); }
+            if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+            if (Util.notNull(options.getRulesets()) && includeInferred) {qdef.setRulesets(options.getRulesets());}
+            if (Util.notNull(options.getGraphPerms())){ qdef.setUpdatePermissions(options.getGraphPerms());}
+            if (Util.notNull(options.getOptimizeLevel())){qdef.setOptimizeLevel(options.getOptimizeLevel());}
+            qdef.setIncludeDefaultRulesets(includeInferred);
+            sparqlManager.clearPageLength();
+            try {
+                sparqlManager.executeUpdate(qdef, tx);
+            }
+            catch (ForbiddenUserException e)
+            {
+                throw new RepositoryException(e.getMessage());
+            }
+            return null;
+        });
     }
 
     /**
@@ -288,27 +388,31 @@ public class MarkLogicClientImpl {
     // performAdd
     // as we use mergeGraphs, baseURI is always file.toURI
     public void performAdd(File file, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException {
-        try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
-            if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new FileHandle(file),tx);
-            } else {
-                if (contexts.length>0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if(Util.notNull(contexts[i])){
-                            graphManager.mergeAs(contexts[i].toString(), new FileHandle(file), getGraphPerms(),tx);
-                        }else{
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(), tx);
+        request(RequestEvent.Operation.MERGE, null, 0, event -> {
+            if (event != null) { event.setBytes(file.length()); }
+            try {
+                graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+                if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
+                    graphManager.mergeGraphs(new FileHandle(file),tx);
+                } else {
+                    if (contexts.length>0) {
+                        for (int i = 0; i < contexts.length; i++) {
+                            if(Util.notNull(contexts[i])){
+                                graphManager.mergeAs(contexts[i].toString(), new FileHandle(file), getGraphPerms(),tx);
+                            }else{
+                                graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(), tx);
+                            }
                         }
+                    } else {
+                        graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
                     }
-                } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
                 }
+            } catch (FailedRequestException e) {
+                logger.error(e.getLocalizedMessage());
+                throw new RDFParseException("Request to MarkLogic server failed, check file and format.");
             }
-        } catch (FailedRequestException e) {
-            logger.error(e.getLocalizedMessage());
-            throw new RDFParseException("Request to MarkLogic server failed, check file and format.");
-        }
+            return null;
+        });
     }
 
     /**
@@ -322,31 +426,90 @@ public class MarkLogicClientImpl {
      * @throws RDFParseException
      */
     public void performAdd(InputStream in, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
-        try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
-            if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new InputStreamHandle(in),tx);
-            } else {
-                if (contexts.length > 0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if (Util.notNull(contexts[i])) {
-                            graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in), getGraphPerms(), tx);
-                        } else {
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+        request(RequestEvent.Operation.MERGE, null, 0, event -> {
+            try {
+                graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+                if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
+                    graphManager.mergeGraphs(new InputStreamHandle(in),tx);
+                } else {
+                    if (contexts.length > 0) {
+                        for (int i = 0; i < contexts.length; i++) {
+                            if (Util.notNull(contexts[i])) {
+                                graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in), getGraphPerms(), tx);
+                            } else {
+                                graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+                            }
                         }
+                    } else {
+                        graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
                     }
-                } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
                 }
+                in.close();
+            } catch (FailedRequestException e) {
+                logger.error(e.getLocalizedMessage());
+                throw new RDFParseException("Request to MarkLogic server failed, check input is valid.");
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage());
+                throw new MarkLogicRdf4jException("IO error");
             }
-            in.close();
-        } catch (FailedRequestException e) {
-            logger.error(e.getLocalizedMessage());
-            throw new RDFParseException("Request to MarkLogic server failed, check input is valid.");
-        } catch (IOException e) {
-            logger.error(e.getLocalizedMessage());
-            throw new MarkLogicRdf4jException("IO error");
-        }
+            return null;
+        });
+    }
+
+    /**
+     * Executes merge of buffered triples, streaming the statements as N-Quads
+     * directly into the request body (no intermediate query string).
+     *
+     * Statements without a context are written to the default graph.
+     *
+     * @param buffer
+     * @param tx
+     * @throws MarkLogicRdf4jException
+     */
+    public void performAdd(TripleBuffer buffer, Transaction tx) throws MarkLogicRdf4jException {
+        request(RequestEvent.Operation.MERGE, null, 0, event -> {
+            OutputStreamHandle handle = new OutputStreamHandle(out -> {
+                if (event == null) {
+                    writeQuads(buffer, out);
+                    return;
+                }
+                CountingOutputStream counted = new CountingOutputStream(out);
+                writeQuads(buffer, counted);
+                event.setBytes(counted.getCount());
+            });
+            handle.setMimetype(RDFFormat.NQUADS.getDefaultMIMEType());
+            try {
+                graphManager.mergeGraphs(handle, tx);
+            } catch (FailedRequestException e) {
+                logger.error(e.getLocalizedMessage());
+                throw new MarkLogicRdf4jException("Request to MarkLogic server failed, could not merge quads.", e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads a graph serialized by the server, the caller must close the stream.
+     *
+     * @param context - graph, null for the default graph
+     * @param dataFormat
+     * @param tx
+     * @return
+     * @throws MarkLogicRdf4jException
+     */
+    public InputStream performReadGraph(Resource context, RDFFormat dataFormat, Transaction tx) throws MarkLogicRdf4jException {
+        return request(RequestEvent.Operation.READ, null, 0, event -> {
+            String graph = Util.notNull(context) ? context.stringValue() : DEFAULT_GRAPH_URI;
+            InputStreamHandle handle = new InputStreamHandle().withMimetype(dataFormat.getDefaultMIMEType());
+            try {
+                InputStream in = graphManager.read(graph, handle, tx).get();
+                if (event != null) { event.setBytes(handle.getByteLength()); }
+                return in;
+            } catch (FailedRequestException e) {
+                logger.error(e.getLocalizedMessage());
+                throw new MarkLogicRdf4jException("Request to MarkLogic server failed, could not read graph.", e);
+            }
+        });
     }
 
     /**
@@ -376,15 +539,19 @@ public class MarkLogicClientImpl {
         } else {
             sb.append("INSERT DATA { GRAPH <" + DEFAULT_GRAPH_URI + "> {?s ?p ?o .}}");
         }  
+        RequestOptions options = this.options;
         SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(sb.toString());
-        if (Util.notNull(ruleset) ) {qdef.setRulesets(ruleset);}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        if (Util.notNull(options.getRulesets()) ) {qdef.setRulesets(options.getRulesets());}
+        if(Util.notNull(options.getGraphPerms())){ qdef.setUpdatePermissions(options.getGraphPerms());}
         if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
 
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        request(RequestEvent.Operation.UPDATE, qdef.getSparql(), countBound(subject, predicate, object), event -> {
+            sparqlManager.executeUpdate(qdef, tx);
+            return null;
+        });
     }
 
     /**
@@ -420,7 +587,10 @@ public class MarkLogicClientImpl {
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        request(RequestEvent.Operation.DELETE, qdef.getSparql(), countBound(subject, predicate, object), event -> {
+            sparqlManager.executeUpdate(qdef, tx);
+            return null;
+        });
     }
 
     /**
@@ -430,17 +600,20 @@ public class MarkLogicClientImpl {
      * @param contexts
      */
     public void performClear(Transaction tx, Resource... contexts) {
-        if(contexts.length>0) {
-            for (int i = 0; i < contexts.length; i++) {
-                if (Util.notNull(contexts[i])) {
-                    graphManager.delete(contexts[i].stringValue(), tx);
-                } else {
-                    graphManager.delete(DEFAULT_GRAPH_URI, tx);
+        request(RequestEvent.Operation.DELETE, null, 0, event -> {
+            if(contexts.length>0) {
+                for (int i = 0; i < contexts.length; i++) {
+                    if (Util.notNull(contexts[i])) {
+                        graphManager.delete(contexts[i].stringValue(), tx);
+                    } else {
+                        graphManager.delete(DEFAULT_GRAPH_URI, tx);
+                    }
                 }
+            }else{
+                graphManager.delete(DEFAULT_GRAPH_URI, tx);
             }
-        }else{
-            graphManager.delete(DEFAULT_GRAPH_URI, tx);
-        }
+            return null;
+        });
     }
 
     /**
@@ -449,15 +622,90 @@ public class MarkLogicClientImpl {
      * @param tx
      */
     public void performClearAll(Transaction tx) {
-        graphManager.deleteGraphs(tx);
+        request(RequestEvent.Operation.DELETE, null, 0, event -> {
+            graphManager.deleteGraphs(tx);
+            return null;
+        });
+    }
+
+    /**
+     * Opens a multi statement transaction.
+     *
+     * @return
+     */
+    public Transaction performOpenTransaction() {
+        return request(RequestEvent.Operation.OPEN_TRANSACTION, null, 0, event -> getDatabaseClient().openTransaction());
+    }
+
+    /**
+     * Commits a transaction.
+     *
+     * @param tx
+     */
+    public void performCommit(Transaction tx) {
+        request(RequestEvent.Operation.COMMIT, null, 0, event -> {
+            tx.commit();
+            return null;
+        });
+    }
+
+    /**
+     * Rolls back a transaction.
+     *
+     * @param tx
+     */
+    public void performRollback(Transaction tx) {
+        request(RequestEvent.Operation.ROLLBACK, null, 0, event -> {
+            tx.rollback();
+            return null;
+        });
+    }
+
+    /**
+     * Adds a listener told as each request of this client starts and ends.
+     *
+     * @param listener
+     */
+    public void addRequestListener(RequestListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Request listener must not be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a request listener.
+     *
+     * @param listener
+     */
+    public void removeRequestListener(RequestListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * getter for request listeners
+     *
+     * @return
+     */
+    public List<RequestListener> getRequestListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * getter for the options requests are sent with unless given others
+     *
+     * @return
+     */
+    public RequestOptions getRequestOptions() {
+        return this.options;
     }
 
     public Integer getOptimizeLevel() {
-        return optimizeLevel;
+        return this.options.getOptimizeLevel();
     }
 
     public void setOptimizeLevel(Integer optimizeLevel) {
-        this.optimizeLevel = optimizeLevel;
+        this.options = this.options.withOptimizeLevel(optimizeLevel);
     }
 
     /**
@@ -466,7 +714,7 @@ public class MarkLogicClientImpl {
      * @return
      */
     public SPARQLRuleset[] getRulesets() {
-        return this.ruleset;
+        return this.options.getRulesets();
     }
 
     /**
@@ -475,17 +723,7 @@ public class MarkLogicClientImpl {
      * @param rulesets
      */
     public void setRulesets(SPARQLRuleset ... rulesets) {
-        if(Util.notNull(rulesets)) {
-            List<SPARQLRuleset> list = new ArrayList<>();
-            for(Object r : rulesets) {
-                if(r != null && rulesets.length > 0) {
-                    list.add((SPARQLRuleset)r);
-                }
-            }
-            this.ruleset = list.toArray(new SPARQLRuleset[list.size()]);
-        }else{
-            this.ruleset = null;
-        }
+        this.options = this.options.withRulesets(rulesets);
     }
 
     /**
@@ -494,7 +732,7 @@ public class MarkLogicClientImpl {
      * @param graphPerms
      */
     public void setGraphPerms(GraphPermissions graphPerms) {
-        this.graphPerms = graphPerms;
+        this.options = this.options.withGraphPerms(graphPerms);
     }
 
     /**
@@ -503,7 +741,7 @@ public class MarkLogicClientImpl {
      * @return
      */
     public GraphPermissions getGraphPerms() {
-        return this.graphPerms;
+        return this.options.getGraphPerms();
     }
 
     /**
@@ -512,7 +750,7 @@ public class MarkLogicClientImpl {
      * @param constrainingQueryDefinition
      */
     public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
-        this.constrainingQueryDef = constrainingQueryDefinition;
+        this.options = this.options.withConstrainingQueryDefinition(constrainingQueryDefinition);
     }
 
     /**
@@ -521,7 +759,7 @@ public class MarkLogicClientImpl {
      * @return
      */
     public QueryDefinition getConstrainingQueryDefinition() {
-        return this.constrainingQueryDef;
+        return this.options.getConstrainingQueryDefinition();
     }
 
     /**
@@ -544,21 +782,158 @@ public class MarkLogicClientImpl {
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Converts RDF4J BindingSet to java client api SPARQLBindings
+     * Converts RDF4J BindingSet to java client api SPARQLBindings, typing
+     * IRIs and literals.
      *
      * @param bindings
      * @return
+     * @throws MarkLogicRdf4jException if a value can't be bound server side
      */
-    protected SPARQLBindings getSPARQLBindings(SPARQLQueryBindingSet bindings) {
+    protected SPARQLBindings getSPARQLBindings(SPARQLQueryBindingSet bindings) throws MarkLogicRdf4jException {
         SPARQLBindings sps = new SPARQLBindingsImpl();
         for (Binding binding : bindings) {
-            sps.bind(binding.getName(), binding.getValue().stringValue());
+            bindValue(sps, binding.getName(), binding.getValue());
         }
         return sps;
     }
 
+    /**
+     * Checks if a value can be sent as a server side binding: an IRI, a
+     * language tagged literal or a literal of an XSD type known to the server.
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isBindable(Value value) {
+        if (value instanceof IRI) {
+            return true;
+        }
+        if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            return lit.getLanguage().isPresent() || rdfType(lit.getDatatype()) != null;
+        }
+        return false;
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Sends a request, telling listeners as it starts and ends. Without
+     * listeners no event is made and the request is passed null.
+     *
+     * @param operation
+     * @param query - SPARQL sent, null for none
+     * @param bindingsCount
+     * @param request
+     * @return what request returns
+     */
+    private <T, E extends Exception> T request(RequestEvent.Operation operation, String query, int bindingsCount, Request<T, E> request) throws E {
+        if (listeners.isEmpty()) {
+            return request.send(null);
+        }
+        RequestEvent event = new RequestEvent(operation, query, bindingsCount);
+        for (RequestListener listener : listeners) {
+            try {
+                listener.requestStarted(event);
+            } catch (RuntimeException e) {
+                logger.warn("Request listener failed: {}", e.getMessage());
+            }
+        }
+        Throwable failure = null;
+        try {
+            return request.send(event);
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            event.finish(failure);
+            for (RequestListener listener : listeners) {
+                try {
+                    listener.requestFinished(event);
+                } catch (RuntimeException e) {
+                    logger.warn("Request listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static int countBindings(SPARQLQueryBindingSet bindings) {
+        return bindings != null ? bindings.size() : 0;
+    }
+
+    private static int countBound(Value... values) {
+        int count = 0;
+        for (Value value : values) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A request to the server.
+     */
+    @FunctionalInterface
+    private interface Request<T, E extends Exception> {
+
+        T send(RequestEvent event) throws E;
+
+    }
+
+    /**
+     * Counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+    }
+
+    /**
+     * Serialize buffered triples as N-Quads straight from the buffer columns,
+     * rendering each distinct term once and mapping the default graph context.
+     *
+     * @param buffer
+     * @param out
+     */
+    private static void writeQuads(TripleBuffer buffer, OutputStream out) throws IOException {
+        String[] terms = buffer.renderTerms(NTriplesUtil::toNTriplesString);
+        String defaultGraph = NTriplesUtil.toNTriplesString(DEFAULT_GRAPH);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        buffer.forEach((s, p, o, c) -> {
+            writer.write(terms[s]);
+            writer.write(' ');
+            writer.write(terms[p]);
+            writer.write(' ');
+            writer.write(terms[o]);
+            writer.write(' ');
+            writer.write(c == TripleBuffer.DEFAULT_GRAPH ? defaultGraph : terms[c]);
+            writer.write(" .\n");
+        });
+        writer.flush();
+    }
+
     /**
      * Bind object.
      *
@@ -571,29 +946,54 @@ public class MarkLogicClientImpl {
     private static SPARQLQueryDefinition bindObject(SPARQLQueryDefinition qdef, String variableName, Value object) throws MarkLogicRdf4jException {
         SPARQLBindings bindings = qdef.getBindings();
         if(object != null){
-            if (object instanceof IRI) {
-                bindings.bind(variableName, object.stringValue());
-            } else if (object instanceof Literal) {
-                Literal lit = (Literal) object;
-                if (lit.getLanguage().orElse(null) != null) {
-                    String languageTag = lit.getLanguage().orElse(null);
-                    bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(languageTag));
-                }else if (((Literal) object).getDatatype() != null) {
-                    try {
-                        String xsdType = lit.getDatatype().toString();
-                        String fragment = new java.net.URI(xsdType).getFragment();
-                        bindings.bind(variableName,lit.getLabel(),RDFTypes.valueOf(fragment.toUpperCase()));
-                    } catch (URISyntaxException e) {
-                        logger.error(e.getLocalizedMessage());
-                        throw new MarkLogicRdf4jException("Problem with object datatype.");
-                    }
-                }else {
-                    // assume we have a string value
-                    bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
-                }
-            }
+            bindValue(bindings, variableName, object);
             qdef.setBindings(bindings);
         }
         return qdef;
     }
+
+    /**
+     * Binds a value, IRIs as IRIs and literals with their language or type.
+     *
+     * @param bindings
+     * @param variableName
+     * @param value
+     * @throws MarkLogicRdf4jException
+     */
+    private static void bindValue(SPARQLBindings bindings, String variableName, Value value) throws MarkLogicRdf4jException {
+        if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            if (lit.getLanguage().isPresent()) {
+                bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(lit.getLanguage().get()));
+            } else if (lit.getDatatype() != null) {
+                RDFTypes type = rdfType(lit.getDatatype());
+                if (type == null) {
+                    throw new MarkLogicRdf4jException("Problem with object datatype.");
+                }
+                bindings.bind(variableName, lit.getLabel(), type);
+            } else {
+                // assume we have a string value
+                bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
+            }
+        } else {
+            bindings.bind(variableName, value.stringValue());
+        }
+    }
+
+    /**
+     * Maps an XSD datatype to its RDFTypes, or null.
+     *
+     * @param datatype
+     * @return
+     */
+    private static RDFTypes rdfType(IRI datatype) {
+        if (!datatype.getNamespace().equals(XMLSchema.NAMESPACE)) {
+            return null;
+        }
+        try {
+            return RDFTypes.valueOf(datatype.getLocalName().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+/**
+ * Receives the metrics of a client: latencies, sizes and counts, keyed by
+ * dotted names such as "select.latency" or "writecache.batch.triples".
+ * Implementations bridge to a metrics registry, or export over JMX as
+ * {@link JmxMetricsRecorder} does; every method does nothing by default.
+ *
+ * Methods are called on query, flusher and parser threads, so they must
+ * be thread safe and cheap.
+ *
+ * Names recorded, where op is select, construct, ask or update:
+ * <ul>
+ *     <li>op.latency - time until the server answered, in nanoseconds</li>
+ *     <li>op.errors - requests that failed</li>
+ *     <li>op.bytes - size of a result as read</li>
+ *     <li>op.read - time from the answer until the result was read, in nanoseconds</li>
+ *     <li>querycache.hits, querycache.misses - query result cache lookups</li>
+ *     <li>parser.active - busy parser threads, sampled as a result is handed off</li>
+ *     <li>parser.inline - results parsed on the caller's thread as every parser thread was busy</li>
+ *     <li>cache.batch.triples, cache.batch.bytes - size of each batch sealed</li>
+ *     <li>cache.queue - batches queued or being flushed, sampled as a batch is sealed</li>
+ *     <li>cache.flush.latency - time to flush a batch, in nanoseconds</li>
+ *     <li>cache.flush.errors - batches that failed to flush</li>
+ * </ul>
+ * where cache is writecache or deletecache.
+ *
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Records nothing.
+     */
+    MetricsRecorder NOOP = new MetricsRecorder() {
+    };
+
+    /**
+     * Records a duration.
+     *
+     * @param name
+     * @param nanos
+     */
+    default void recordTime(String name, long nanos) {
+    }
+
+    /**
+     * Records a sample of a distribution, such as a size or depth.
+     *
+     * @param name
+     * @param amount
+     */
+    default void recordAmount(String name, long amount) {
+    }
+
+    /**
+     * Counts an event.
+     *
+     * @param name
+     */
+    default void increment(String name) {
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.common.iteration.AbstractCloseableIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Tuple result that reads a SELECT one page of pageLength rows at a time,
+ * asking the server for the next page when the current one is used up.
+ *
+ * While the caller reads a page, the following pages are fetched in the
+ * background, holding at most maxPages pages in memory including the one
+ * being read. Pages are separate requests, so the query should have an
+ * ORDER BY for them to line up, and writes made between pages can shift
+ * rows across page boundaries. Inside a transaction pages are fetched one
+ * at a time when needed.
+ *
+ */
+public class PagedTupleQueryResult extends AbstractCloseableIteration<BindingSet, QueryEvaluationException> implements TupleQueryResult {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagedTupleQueryResult.class);
+
+    public static final int DEFAULT_MAX_PAGES = 2;
+
+    private final MarkLogicClient client;
+    private final String queryString;
+    private final SPARQLQueryBindingSet bindings;
+    private final long pageLength;
+    private final int maxPages;
+    private final boolean includeInferred;
+    private final String baseURI;
+    private final TupleQueryResultFormat resultFormat;
+    private final RequestOptions options;
+    private final boolean prefetch;
+
+    // pages being fetched, in order
+    private final Deque<FutureTask<Page>> fetches = new ArrayDeque<>();
+    private long nextStart;
+    private boolean lastPage;
+
+    private List<String> bindingNames;
+    private Iterator<BindingSet> current = Collections.emptyIterator();
+
+    private static class Page {
+        final List<String> bindingNames;
+        final List<BindingSet> rows;
+
+        Page(List<String> bindingNames, List<BindingSet> rows) {
+            this.bindingNames = bindingNames;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Fetches the first page.
+     *
+     * @param client
+     * @param queryString
+     * @param bindings
+     * @param pageLength - rows per request
+     * @param maxPages - pages held in memory, 1 to fetch without prefetching
+     * @param includeInferred
+     * @param baseURI
+     * @param resultFormat - format of the pages, null for the client's
+     * @param options - options every page is requested with
+     * @throws QueryEvaluationException
+     */
+    PagedTupleQueryResult(MarkLogicClient client, String queryString, SPARQLQueryBindingSet bindings, long pageLength, int maxPages, boolean includeInferred, String baseURI, TupleQueryResultFormat resultFormat, RequestOptions options) throws QueryEvaluationException {
+        if (pageLength < 1 || maxPages < 1) {
+            throw new IllegalArgumentException("Paged result needs a positive page length and number of pages.");
+        }
+        this.client = client;
+        this.queryString = queryString;
+        // prefetches read the bindings after the query may have been changed
+        this.bindings = new SPARQLQueryBindingSet(bindings);
+        this.pageLength = pageLength;
+        this.maxPages = maxPages;
+        this.includeInferred = includeInferred;
+        this.baseURI = baseURI;
+        this.resultFormat = resultFormat;
+        this.options = options;
+        this.prefetch = maxPages > 1 && !client.isActiveTransaction();
+        this.nextStart = 1;
+
+        Page first = fetchPage(nextStart);
+        nextStart += pageLength;
+        this.bindingNames = first.bindingNames;
+        show(first);
+    }
+
+    /**
+     * getter for rows per request
+     *
+     * @return
+     */
+    public long getPageLength() {
+        return pageLength;
+    }
+
+    /**
+     * getter for pages held in memory
+     *
+     * @return
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    @Override
+    public List<String> getBindingNames() throws QueryEvaluationException {
+        return bindingNames;
+    }
+
+    @Override
+    public boolean hasNext() throws QueryEvaluationException {
+        if (isClosed()) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            if (lastPage) {
+                close();
+                return false;
+            }
+            show(nextPage());
+        }
+        return true;
+    }
+
+    @Override
+    public BindingSet next() throws QueryEvaluationException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() throws QueryEvaluationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void handleClose() throws QueryEvaluationException {
+        cancelFetches();
+        current = Collections.emptyIterator();
+    }
+
+    /**
+     * Makes page the current one and tops up the prefetched pages, or drops
+     * them if page is the last.
+     */
+    private void show(Page page) {
+        current = page.rows.iterator();
+        if (page.rows.size() < pageLength) {
+            // pages after the last are empty
+            lastPage = true;
+            cancelFetches();
+            return;
+        }
+        while (prefetch && fetches.size() < maxPages - 1) {
+            long start = nextStart;
+            FutureTask<Page> fetch = new FutureTask<>(() -> fetchPage(start));
+            if (!client.tryExecute(fetch)) {
+                // no free thread, the page is fetched when needed
+                break;
+            }
+            fetches.add(fetch);
+            nextStart += pageLength;
+        }
+    }
+
+    private void cancelFetches() {
+        for (FutureTask<Page> fetch : fetches) {
+            fetch.cancel(true);
+        }
+        fetches.clear();
+    }
+
+    private Page nextPage() throws QueryEvaluationException {
+        FutureTask<Page> fetch = fetches.poll();
+        if (fetch == null) {
+            Page page = fetchPage(nextStart);
+            nextStart += pageLength;
+            return page;
+        }
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryEvaluationException("Interrupted waiting for result page.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof QueryEvaluationException) {
+                throw (QueryEvaluationException) cause;
+            }
+            throw new QueryEvaluationException(cause.getMessage(), cause);
+        }
+    }
+
+    private Page fetchPage(long start) throws QueryEvaluationException {
+        logger.debug("fetching result page at {}", start);
+        try (TupleQueryResult result = client.sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, resultFormat, options)) {
+            return new Page(result.getBindingNames(), QueryResults.asList(result));
+        } catch (QueryEvaluationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }
+    }
+
+}
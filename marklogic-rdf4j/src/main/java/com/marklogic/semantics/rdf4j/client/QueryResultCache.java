@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.UnionIteration;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.GraphQueryResult;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.impl.IteratingGraphQueryResult;
+import org.eclipse.rdf4j.query.impl.IteratingTupleQueryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of query results, least recently used entries evicted
+ * first and every entry expiring after ttlMillis.
+ *
+ * Results are keyed by everything that goes into the request. Results of
+ * more than maxRows rows or statements are streamed through uncached. The
+ * client invalidates the whole cache on each write it sends; a result
+ * whose request started before an invalidation is not stored.
+ *
+ */
+public class QueryResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+    public static final int DEFAULT_MAX_ROWS = 10000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxRows;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // bumped by invalidate, guarded by this
+    private long generation = 0;
+
+    private final LinkedHashMap<List<Object>, Entry> entries;
+
+    private static class Entry {
+        final Object result;
+        final long expires;
+
+        Entry(Object result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+    }
+
+    private static class TupleEntry {
+        final List<String> bindingNames;
+        final List<BindingSet> rows;
+
+        TupleEntry(List<String> bindingNames, List<BindingSet> rows) {
+            this.bindingNames = bindingNames;
+            this.rows = rows;
+        }
+    }
+
+    private static class GraphEntry {
+        final Map<String, String> namespaces;
+        final List<Statement> statements;
+
+        GraphEntry(Map<String, String> namespaces, List<Statement> statements) {
+            this.namespaces = namespaces;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * @param maxEntries - results kept
+     * @param ttlMillis - time (ms) a result is kept
+     * @param maxRows - rows or statements of the largest result kept
+     */
+    public QueryResultCache(int maxEntries, long ttlMillis, int maxRows) {
+        if (maxEntries < 1 || ttlMillis < 1 || maxRows < 0) {
+            throw new IllegalArgumentException("Query result cache needs a positive size and time to live.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.maxRows = maxRows;
+        this.entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+                if (size() > QueryResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the current generation, to be taken before the request whose
+     * result is cached is sent.
+     *
+     * @return
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Drops every result.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        if (!entries.isEmpty()) {
+            entries.clear();
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a cached tuple result, or null.
+     *
+     * @param key
+     * @return
+     */
+    public TupleQueryResult getTupleResult(List<Object> key) {
+        TupleEntry entry = (TupleEntry) get(key);
+        return entry == null ? null : new IteratingTupleQueryResult(entry.bindingNames, entry.rows);
+    }
+
+    /**
+     * Reads a tuple result into the cache, returning a result over the same rows.
+     *
+     * @param key
+     * @param generation - generation taken before the request was sent
+     * @param result
+     * @return
+     * @throws QueryEvaluationException
+     */
+    public TupleQueryResult cacheTupleResult(List<Object> key, long generation, TupleQueryResult result) throws QueryEvaluationException {
+        List<String> bindingNames = result.getBindingNames();
+        List<BindingSet> rows = new ArrayList<>();
+        while (rows.size() <= maxRows && result.hasNext()) {
+            rows.add(result.next());
+        }
+        if (rows.size() > maxRows) {
+            return new IteratingTupleQueryResult(bindingNames, new UnionIteration<BindingSet, QueryEvaluationException>(
+                    new CloseableIteratorIteration<BindingSet, QueryEvaluationException>(rows.iterator()), result));
+        }
+        result.close();
+        put(key, generation, new TupleEntry(bindingNames, Collections.unmodifiableList(rows)));
+        return new IteratingTupleQueryResult(bindingNames, rows);
+    }
+
+    /**
+     * Returns a cached graph result, or null.
+     *
+     * @param key
+     * @return
+     */
+    public GraphQueryResult getGraphResult(List<Object> key) {
+        GraphEntry entry = (GraphEntry) get(key);
+        return entry == null ? null : new IteratingGraphQueryResult(entry.namespaces, entry.statements);
+    }
+
+    /**
+     * Reads a graph result into the cache, returning a result over the same statements.
+     *
+     * @param key
+     * @param generation - generation taken before the request was sent
+     * @param result
+     * @return
+     * @throws QueryEvaluationException
+     */
+    public GraphQueryResult cacheGraphResult(List<Object> key, long generation, GraphQueryResult result) throws QueryEvaluationException {
+        List<Statement> statements = new ArrayList<>();
+        while (statements.size() <= maxRows && result.hasNext()) {
+            statements.add(result.next());
+        }
+        Map<String, String> namespaces = new HashMap<>(result.getNamespaces());
+        if (statements.size() > maxRows) {
+            return new IteratingGraphQueryResult(namespaces, new UnionIteration<Statement, QueryEvaluationException>(
+                    new CloseableIteratorIteration<Statement, QueryEvaluationException>(statements.iterator()), result));
+        }
+        result.close();
+        put(key, generation, new GraphEntry(Collections.unmodifiableMap(namespaces), Collections.unmodifiableList(statements)));
+        return new IteratingGraphQueryResult(namespaces, statements);
+    }
+
+    /**
+     * Returns a cached boolean result, or null.
+     *
+     * @param key
+     * @return
+     */
+    public Boolean getBooleanResult(List<Object> key) {
+        return (Boolean) get(key);
+    }
+
+    /**
+     * Caches a boolean result.
+     *
+     * @param key
+     * @param generation - generation taken before the request was sent
+     * @param result
+     * @return result
+     */
+    public boolean cacheBooleanResult(List<Object> key, long generation, boolean result) {
+        put(key, generation, result);
+        return result;
+    }
+
+    /**
+     * getter for number of lookups answered from the cache
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * getter for number of lookups sent to the server
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * getter for number of results evicted to stay within maxEntries
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * getter for number of times cached results were dropped by a write
+     *
+     * @return
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Returns number of cached results, including expired ones not yet dropped.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Object get(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires <= System.currentTimeMillis()) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    private synchronized void put(List<Object> key, long generation, Object result) {
+        if (generation == this.generation) {
+            entries.put(key, new Entry(result, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+}
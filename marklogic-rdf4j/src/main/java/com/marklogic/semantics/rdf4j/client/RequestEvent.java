@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One request of a client to the server, as seen by {@link RequestListener}s.
+ * The query hash is the String hash of the SPARQL sent, so it is the same
+ * across processes; bytes are those of the body sent for merges, or of
+ * the response as announced by the server for reads, -1 when not known.
+ *
+ */
+public final class RequestEvent {
+
+    /**
+     * Kinds of request.
+     */
+    public enum Operation {
+        SELECT, CONSTRUCT, ASK, UPDATE, MERGE, DELETE, READ, OPEN_TRANSACTION, COMMIT, ROLLBACK
+    }
+
+    private final Operation operation;
+    private final int queryHash;
+    private final int bindingsCount;
+    private final long startNanos;
+    private long bytes = -1;
+    private long durationNanos = -1;
+    private Throwable failure;
+    private Map<String, Object> attributes;
+
+    RequestEvent(Operation operation, String query, int bindingsCount) {
+        this.operation = operation;
+        this.queryHash = query != null ? query.hashCode() : 0;
+        this.bindingsCount = bindingsCount;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * getter for the kind of request
+     *
+     * @return
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * getter for the hash of the SPARQL sent, 0 for requests without a query
+     *
+     * @return
+     */
+    public int getQueryHash() {
+        return queryHash;
+    }
+
+    /**
+     * getter for the number of variables bound
+     *
+     * @return
+     */
+    public int getBindingsCount() {
+        return bindingsCount;
+    }
+
+    /**
+     * getter for System.nanoTime() as the request started
+     *
+     * @return
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * getter for bytes sent or received, -1 if not known
+     *
+     * @return
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * getter for how long the request took, -1 until it finished
+     *
+     * @return
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Checks if the request finished without failing.
+     *
+     * @return
+     */
+    public boolean isSucceeded() {
+        return durationNanos >= 0 && failure == null;
+    }
+
+    /**
+     * getter for what the request failed with, null if it succeeded
+     *
+     * @return
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Attaches context to the event, such as a trace id, for listeners to
+     * read back as the request finishes.
+     *
+     * @param name
+     * @param value
+     */
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    /**
+     * getter for an attached attribute
+     *
+     * @param name
+     * @return null if not attached
+     */
+    public Object getAttribute(String name) {
+        return attributes != null ? attributes.get(name) : null;
+    }
+
+    void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    void finish(Throwable failure) {
+        this.durationNanos = System.nanoTime() - startNanos;
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " query=" + queryHash + " bindings=" + bindingsCount + " bytes=" + bytes
+                + " nanos=" + durationNanos + (failure != null ? " failed: " + failure : "");
+    }
+
+}
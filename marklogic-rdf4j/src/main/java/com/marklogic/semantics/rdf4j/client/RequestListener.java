@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+/**
+ * Told as each request of a client to the server starts and ends: queries,
+ * updates, merges, deletes, graph reads and transaction calls. Both calls
+ * are made on the thread sending the request, which for the write and
+ * delete caches is a background flusher, and get the same event, so
+ * context such as a trace or span can be attached at the start with
+ * {@link RequestEvent#setAttribute} and read back at the end.
+ *
+ * Listeners must be thread safe and quick, and should not throw; what
+ * they throw is logged and ignored.
+ *
+ */
+public interface RequestListener {
+
+    /**
+     * Called before the request is sent.
+     *
+     * @param event
+     */
+    default void requestStarted(RequestEvent event) {
+    }
+
+    /**
+     * Called once the request succeeded or failed.
+     *
+     * @param event - with duration, bytes and outcome
+     */
+    default void requestFinished(RequestEvent event) {
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.client.semantics.SPARQLRuleset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the options a request is sent with: rulesets,
+ * graph permissions, constraining query and optimize level. Changing an
+ * option returns a new snapshot, so a snapshot can be read by any thread
+ * while the query or connection it came from is changed.
+ *
+ */
+public final class RequestOptions {
+
+    /**
+     * No rulesets, permissions, constraining query or optimize level.
+     */
+    public static final RequestOptions DEFAULT = new RequestOptions(null, null, null, null);
+
+    private final SPARQLRuleset[] rulesets;
+    private final GraphPermissions graphPerms;
+    private final QueryDefinition constrainingQueryDef;
+    private final Integer optimizeLevel;
+
+    private RequestOptions(SPARQLRuleset[] rulesets, GraphPermissions graphPerms, QueryDefinition constrainingQueryDef, Integer optimizeLevel) {
+        this.rulesets = rulesets;
+        this.graphPerms = graphPerms;
+        this.constrainingQueryDef = constrainingQueryDef;
+        this.optimizeLevel = optimizeLevel;
+    }
+
+    /**
+     * getter for rulesets
+     *
+     * @return copy of the rulesets, null if none are set
+     */
+    public SPARQLRuleset[] getRulesets() {
+        return rulesets == null ? null : rulesets.clone();
+    }
+
+    /**
+     * getter for graph permissions
+     *
+     * @return
+     */
+    public GraphPermissions getGraphPerms() {
+        return graphPerms;
+    }
+
+    /**
+     * getter for ConstrainingQueryDefinition
+     *
+     * @return
+     */
+    public QueryDefinition getConstrainingQueryDefinition() {
+        return constrainingQueryDef;
+    }
+
+    /**
+     * getter for optimize level
+     *
+     * @return
+     */
+    public Integer getOptimizeLevel() {
+        return optimizeLevel;
+    }
+
+    /**
+     * Returns these options with rulesets, filtering out nulls.
+     *
+     * @param rulesets - null for none
+     * @return
+     */
+    public RequestOptions withRulesets(SPARQLRuleset... rulesets) {
+        SPARQLRuleset[] filtered = null;
+        if (rulesets != null) {
+            List<SPARQLRuleset> list = new ArrayList<>();
+            for (SPARQLRuleset r : rulesets) {
+                if (r != null) {
+                    list.add(r);
+                }
+            }
+            filtered = list.toArray(new SPARQLRuleset[list.size()]);
+        }
+        return new RequestOptions(filtered, graphPerms, constrainingQueryDef, optimizeLevel);
+    }
+
+    /**
+     * Returns these options with graph permissions.
+     *
+     * @param graphPerms
+     * @return
+     */
+    public RequestOptions withGraphPerms(GraphPermissions graphPerms) {
+        return new RequestOptions(rulesets, graphPerms, constrainingQueryDef, optimizeLevel);
+    }
+
+    /**
+     * Returns these options with a constraining query.
+     *
+     * @param constrainingQueryDefinition
+     * @return
+     */
+    public RequestOptions withConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
+        return new RequestOptions(rulesets, graphPerms, constrainingQueryDefinition, optimizeLevel);
+    }
+
+    /**
+     * Returns these options with an optimize level.
+     *
+     * @param optimizeLevel
+     * @return
+     */
+    public RequestOptions withOptimizeLevel(Integer optimizeLevel) {
+        return new RequestOptions(rulesets, graphPerms, constrainingQueryDef, optimizeLevel);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of daemon threads that parse query results in the
+ * background and prefetch result pages, shared by every client unless a
+ * client is given its own.
+ *
+ * Work is never queued: when every thread is busy the task is refused and
+ * the client parses the result on the caller's thread instead. Once its
+ * prefetch queue is full a parser thread waits for the result to be read,
+ * so a result that is partly read and never closed pins its thread until
+ * it is closed. With every thread pinned, each query reads its whole
+ * result into memory on the caller's thread, so results must be closed.
+ *
+ */
+public class ResultParserExecutor {
+
+    public static final int DEFAULT_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_DEPTH = 10;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final AtomicInteger executorCount = new AtomicInteger();
+
+    private static final ResultParserExecutor shared = new ResultParserExecutor(DEFAULT_THREADS);
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param threads - results parsed concurrently
+     */
+    public ResultParserExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Result parser executor needs at least one thread.");
+        }
+        int executor = executorCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "marklogic-rdf4j-parser-" + executor + "-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * getter for the executor shared by clients not given their own
+     *
+     * @return
+     */
+    public static ResultParserExecutor getShared() {
+        return shared;
+    }
+
+    /**
+     * Runs command on a free thread.
+     *
+     * @param command
+     * @return false if every thread is busy and command was not run
+     */
+    public boolean tryExecute(Runnable command) {
+        try {
+            pool.execute(command);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * getter for results parsed concurrently
+     *
+     * @return
+     */
+    public int getThreads() {
+        return pool.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns number of threads busy parsing.
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Stops taking work, letting results being parsed finish.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+}
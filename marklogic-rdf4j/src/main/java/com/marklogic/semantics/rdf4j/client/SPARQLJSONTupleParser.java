@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+import org.eclipse.rdf4j.query.resultio.AbstractTupleQueryResultParser;
+import org.eclipse.rdf4j.query.resultio.QueryResultParseException;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming parser of SPARQL JSON SELECT results, reading the response
+ * token by token and handing on rows that keep each term as read until
+ * its value is asked for. Repeated IRIs share one value.
+ *
+ */
+public class SPARQLJSONTupleParser extends AbstractTupleQueryResultParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String RDF_LANG_STRING = "http://www.w3.org/1999/02/22-rdf-syntax-ns#langString";
+
+    private final ValueDecoder decoder;
+
+    /**
+     * @param valueFactory - factory of the values of the rows
+     */
+    public SPARQLJSONTupleParser(ValueFactory valueFactory) {
+        this(new ValueDecoder(valueFactory));
+    }
+
+    /**
+     * @param decoder - decoder shared by results of one client
+     */
+    SPARQLJSONTupleParser(ValueDecoder decoder) {
+        super(decoder.getValueFactory());
+        this.decoder = decoder;
+    }
+
+    @Override
+    public TupleQueryResultFormat getTupleQueryResultFormat() {
+        return TupleQueryResultFormat.JSON;
+    }
+
+    @Override
+    public void parse(InputStream in) throws IOException, QueryResultParseException, TupleQueryResultHandlerException {
+        try (JsonParser jp = JSON_FACTORY.createParser(in)) {
+            expect(jp, jp.nextToken(), JsonToken.START_OBJECT);
+            LazyBindingSet.Columns columns = null;
+            // rows read before the head, if the results come first
+            List<LazyBindingSet> early = null;
+            while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                String field = jp.getCurrentName();
+                JsonToken token = jp.nextToken();
+                if ("head".equals(field)) {
+                    expect(jp, token, JsonToken.START_OBJECT);
+                    columns = parseHead(jp, columns);
+                    if (handler != null) {
+                        handler.startQueryResult(columns.names);
+                        if (early != null) {
+                            for (LazyBindingSet row : early) {
+                                handler.handleSolution(row);
+                            }
+                            early = null;
+                        }
+                    }
+                } else if ("results".equals(field)) {
+                    expect(jp, token, JsonToken.START_OBJECT);
+                    if (columns == null) {
+                        early = new ArrayList<>();
+                        columns = parseResults(jp, new LazyBindingSet.Columns(new ArrayList<>()), early);
+                    } else {
+                        columns = parseResults(jp, columns, null);
+                    }
+                } else {
+                    jp.skipChildren();
+                }
+            }
+            if (columns == null) {
+                throw new QueryResultParseException("No head or results in SPARQL JSON result.");
+            }
+            if (handler != null) {
+                if (early != null) {
+                    // no head at all
+                    handler.startQueryResult(columns.names);
+                    for (LazyBindingSet row : early) {
+                        handler.handleSolution(row);
+                    }
+                }
+                handler.endQueryResult();
+            }
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            throw new QueryResultParseException(e.getOriginalMessage(), location == null ? -1 : location.getLineNr(), location == null ? -1 : location.getColumnNr());
+        }
+    }
+
+    /**
+     * Reads head.vars, adding them to columns of rows read before.
+     */
+    private LazyBindingSet.Columns parseHead(JsonParser jp, LazyBindingSet.Columns columns) throws IOException {
+        List<String> names = columns == null ? new ArrayList<>() : new ArrayList<>(columns.names);
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String field = jp.getCurrentName();
+            JsonToken token = jp.nextToken();
+            if ("vars".equals(field)) {
+                expect(jp, token, JsonToken.START_ARRAY);
+                while ((token = jp.nextToken()) != JsonToken.END_ARRAY) {
+                    expect(jp, token, JsonToken.VALUE_STRING);
+                    String name = jp.getText();
+                    if (!names.contains(name)) {
+                        names.add(name);
+                    }
+                }
+            } else {
+                jp.skipChildren();
+            }
+        }
+        return new LazyBindingSet.Columns(names);
+    }
+
+    /**
+     * Reads results.bindings, passing rows to the handler or, before the
+     * head, to early.
+     *
+     * @return columns, with variables found in rows but not in the head
+     */
+    private LazyBindingSet.Columns parseResults(JsonParser jp, LazyBindingSet.Columns columns, List<LazyBindingSet> early) throws IOException {
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String field = jp.getCurrentName();
+            JsonToken token = jp.nextToken();
+            if (!"bindings".equals(field)) {
+                jp.skipChildren();
+                continue;
+            }
+            expect(jp, token, JsonToken.START_ARRAY);
+            while ((token = jp.nextToken()) != JsonToken.END_ARRAY) {
+                expect(jp, token, JsonToken.START_OBJECT);
+                columns = parseRow(jp, columns, early);
+            }
+        }
+        return columns;
+    }
+
+    private LazyBindingSet.Columns parseRow(JsonParser jp, LazyBindingSet.Columns columns, List<LazyBindingSet> early) throws IOException {
+        int width = columns.size();
+        byte[] kinds = new byte[width];
+        String[] lexicals = new String[width];
+        String[] extras = new String[width];
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String name = jp.getCurrentName();
+            expect(jp, jp.nextToken(), JsonToken.START_OBJECT);
+            int i = columns.indexOf(name);
+            if (i < 0) {
+                List<String> names = new ArrayList<>(columns.names);
+                names.add(name);
+                columns = new LazyBindingSet.Columns(names);
+                i = names.size() - 1;
+            }
+            if (i >= width) {
+                width = columns.size();
+                kinds = Arrays.copyOf(kinds, width);
+                lexicals = Arrays.copyOf(lexicals, width);
+                extras = Arrays.copyOf(extras, width);
+            }
+            parseTerm(jp, i, kinds, lexicals, extras);
+        }
+        LazyBindingSet row = new LazyBindingSet(columns, decoder, kinds, lexicals, extras);
+        if (early != null) {
+            early.add(row);
+        } else if (handler != null) {
+            handler.handleSolution(row);
+        }
+        return columns;
+    }
+
+    private void parseTerm(JsonParser jp, int i, byte[] kinds, String[] lexicals, String[] extras) throws IOException {
+        String type = null;
+        String value = null;
+        String lang = null;
+        String datatype = null;
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String field = jp.getCurrentName();
+            JsonToken token = jp.nextToken();
+            if (token != JsonToken.VALUE_STRING) {
+                jp.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "type":
+                    type = jp.getText();
+                    break;
+                case "value":
+                    value = jp.getText();
+                    break;
+                case "xml:lang":
+                    lang = jp.getText();
+                    break;
+                case "datatype":
+                    datatype = jp.getText();
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (type == null || value == null) {
+            throw new QueryResultParseException("Term without type or value in SPARQL JSON result.", jp.getCurrentLocation().getLineNr(), jp.getCurrentLocation().getColumnNr());
+        }
+        lexicals[i] = value;
+        switch (type) {
+            case "uri":
+                kinds[i] = ValueDecoder.URI;
+                break;
+            case "bnode":
+                kinds[i] = ValueDecoder.BNODE;
+                break;
+            case "literal":
+            case "typed-literal":
+                if (lang != null && (datatype == null || RDF_LANG_STRING.equals(datatype))) {
+                    kinds[i] = ValueDecoder.LANG_LITERAL;
+                    extras[i] = lang;
+                } else if (datatype != null) {
+                    kinds[i] = ValueDecoder.TYPED_LITERAL;
+                    extras[i] = datatype;
+                } else {
+                    kinds[i] = ValueDecoder.LITERAL;
+                }
+                break;
+            default:
+                throw new QueryResultParseException("Unknown term type " + type + " in SPARQL JSON result.", jp.getCurrentLocation().getLineNr(), jp.getCurrentLocation().getColumnNr());
+        }
+    }
+
+    private static void expect(JsonParser jp, JsonToken actual, JsonToken expected) throws QueryResultParseException {
+        if (actual != expected) {
+            JsonLocation location = jp.getCurrentLocation();
+            throw new QueryResultParseException("Expected " + expected + " but found " + actual + " in SPARQL JSON result.", location.getLineNr(), location.getColumnNr());
+        }
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Append-only statement buffer for the triple caches.
+ *
+ * Terms are interned in a per-buffer dictionary and statements are stored
+ * as parallel int columns of term ids, so a buffered statement costs a few
+ * ints instead of the statement and index objects of a Model. Statements
+ * are looked up through an open addressing index on subject, predicate and
+ * object; removed statements are only marked.
+ *
+ */
+public class TripleBuffer {
+
+    /**
+     * Receives the term ids of a buffered statement.
+     */
+    public interface RowHandler {
+        void row(int subject, int predicate, int object, int context) throws IOException;
+    }
+
+    // context id of the default graph
+    public static final int DEFAULT_GRAPH = -1;
+
+    // id of a term not in the dictionary
+    public static final int NOT_FOUND = -2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean deduplicate;
+
+    private final Map<Value, Integer> ids = new HashMap<>();
+    private final List<Value> terms = new ArrayList<>();
+
+    private int[] subjects = new int[INITIAL_CAPACITY];
+    private int[] predicates = new int[INITIAL_CAPACITY];
+    private int[] objects = new int[INITIAL_CAPACITY];
+    private int[] contexts = new int[INITIAL_CAPACITY];
+    private final BitSet removed = new BitSet();
+
+    // context ids of every row ever added, shifted by one for the default graph
+    private final BitSet usedContexts = new BitSet();
+
+    // row + 1 per slot, 0 for an empty slot, kept at most half full
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    private int rows = 0;
+    private int live = 0;
+
+    /**
+     * Creates a buffer that ignores statements already buffered.
+     */
+    public TripleBuffer() {
+        this(true);
+    }
+
+    /**
+     * @param deduplicate - if false, statements are appended without checking
+     *                    whether they are already buffered
+     */
+    public TripleBuffer(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * return true if statements already buffered are ignored
+     *
+     * @return
+     */
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Returns number of buffered statements.
+     *
+     * @return
+     */
+    public int size() {
+        return live;
+    }
+
+    public boolean isEmpty() {
+        return live == 0;
+    }
+
+    /**
+     * Buffers a statement, once per context; no contexts means the default graph.
+     *
+     * @return true if the buffer changed
+     */
+    public boolean add(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        int s = intern(subject);
+        int p = intern(predicate);
+        int o = intern(object);
+        if (contexts.length == 0) {
+            return addRow(s, p, o, DEFAULT_GRAPH);
+        }
+        boolean changed = false;
+        for (Resource context : contexts) {
+            changed |= addRow(s, p, o, context == null ? DEFAULT_GRAPH : intern(context));
+        }
+        return changed;
+    }
+
+    /**
+     * Removes matching statements, null terms match anything and no contexts
+     * match every context; a null context is the default graph.
+     *
+     * @return true if the buffer changed
+     */
+    public boolean remove(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        return match(subject, predicate, object, contexts, true);
+    }
+
+    /**
+     * Tests for matching statements, null terms match anything and no contexts
+     * match every context; a null context is the default graph.
+     *
+     * @return
+     */
+    public boolean contains(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        return match(subject, predicate, object, contexts, false);
+    }
+
+    /**
+     * Tests if statements were added to a context, a null context being the
+     * default graph. Removed statements still count.
+     *
+     * @param context
+     * @return
+     */
+    public boolean hasContext(Resource context) {
+        int c = context == null ? DEFAULT_GRAPH : idOf(context);
+        return c != NOT_FOUND && usedContexts.get(c + 1);
+    }
+
+    /**
+     * Drops every statement and term.
+     */
+    public void clear() {
+        ids.clear();
+        terms.clear();
+        removed.clear();
+        usedContexts.clear();
+        Arrays.fill(index, 0);
+        rows = 0;
+        live = 0;
+    }
+
+    /**
+     * Returns the dictionary id of a term, or NOT_FOUND.
+     *
+     * @param value
+     * @return
+     */
+    public int idOf(Value value) {
+        Integer id = ids.get(value);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    /**
+     * Returns the term of a dictionary id.
+     *
+     * @param id
+     * @return
+     */
+    public Value term(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * Renders every term of the dictionary once, indexed by id.
+     *
+     * @param renderer
+     * @return
+     */
+    public String[] renderTerms(Function<Value, String> renderer) {
+        String[] rendered = new String[terms.size()];
+        for (int i = 0; i < rendered.length; i++) {
+            rendered[i] = renderer.apply(terms.get(i));
+        }
+        return rendered;
+    }
+
+    /**
+     * Visits buffered statements in the order they were added.
+     *
+     * @param handler
+     * @throws IOException
+     */
+    public void forEach(RowHandler handler) throws IOException {
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                handler.row(subjects[row], predicates[row], objects[row], contexts[row]);
+            }
+        }
+    }
+
+    /**
+     * Visits buffered statements grouped by context, each group in the order
+     * its statements were added.
+     *
+     * @param handler
+     * @throws IOException
+     */
+    public void forEachByContext(RowHandler handler) throws IOException {
+        // counting sort on context id, shifted by one for the default graph
+        int[] start = new int[terms.size() + 2];
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                start[contexts[row] + 2]++;
+            }
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] order = new int[live];
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                order[start[contexts[row] + 1]++] = row;
+            }
+        }
+        for (int row : order) {
+            handler.row(subjects[row], predicates[row], objects[row], contexts[row]);
+        }
+    }
+
+    private int intern(Value value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = terms.size();
+            terms.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    private boolean addRow(int s, int p, int o, int c) {
+        if (deduplicate && find(s, p, o, new int[] { c }, false)) {
+            return false;
+        }
+        if (rows == subjects.length) {
+            grow();
+        }
+        subjects[rows] = s;
+        predicates[rows] = p;
+        objects[rows] = o;
+        contexts[rows] = c;
+        usedContexts.set(c + 1);
+        insert(rows);
+        rows++;
+        live++;
+        return true;
+    }
+
+    private boolean match(Resource subject, IRI predicate, Value object, Resource[] contextArgs, boolean remove) {
+        int s = subject == null ? NOT_FOUND : idOf(subject);
+        int p = predicate == null ? NOT_FOUND : idOf(predicate);
+        int o = object == null ? NOT_FOUND : idOf(object);
+        if ((subject != null && s == NOT_FOUND) || (predicate != null && p == NOT_FOUND) || (object != null && o == NOT_FOUND)) {
+            return false;
+        }
+        int[] c = null;
+        if (contextArgs.length > 0) {
+            c = new int[contextArgs.length];
+            for (int i = 0; i < c.length; i++) {
+                c[i] = contextArgs[i] == null ? DEFAULT_GRAPH : idOf(contextArgs[i]);
+            }
+        }
+        if (subject != null && predicate != null && object != null) {
+            return find(s, p, o, c, remove);
+        }
+        boolean found = false;
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)
+                    && (subject == null || subjects[row] == s)
+                    && (predicate == null || predicates[row] == p)
+                    && (object == null || objects[row] == o)
+                    && matchesContext(contexts[row], c)) {
+                if (!remove) {
+                    return true;
+                }
+                removeRow(row);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Probes the index for live rows of a fully bound triple in one of the
+     * contexts (any context if null), marking them removed if asked.
+     */
+    private boolean find(int s, int p, int o, int[] c, boolean remove) {
+        int mask = index.length - 1;
+        boolean found = false;
+        for (int slot = hash(s, p, o) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if (!removed.get(row) && subjects[row] == s && predicates[row] == p && objects[row] == o
+                    && matchesContext(contexts[row], c)) {
+                if (!remove) {
+                    return true;
+                }
+                removeRow(row);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static boolean matchesContext(int context, int[] c) {
+        if (c == null) {
+            return true;
+        }
+        for (int id : c) {
+            if (id == context) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeRow(int row) {
+        removed.set(row);
+        live--;
+    }
+
+    private void insert(int row) {
+        int mask = index.length - 1;
+        int slot = hash(subjects[row], predicates[row], objects[row]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = row + 1;
+    }
+
+    private void grow() {
+        int capacity = subjects.length * 2;
+        subjects = Arrays.copyOf(subjects, capacity);
+        predicates = Arrays.copyOf(predicates, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+        contexts = Arrays.copyOf(contexts, capacity);
+        index = new int[capacity * 2];
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                insert(row);
+            }
+        }
+    }
+
+    private static int hash(int s, int p, int o) {
+        int h = (s * 31 + p) * 31 + o;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.utils.Util;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a large RDF input as a series of chunks uploaded concurrently, each
+ * its own request, so no single server transaction has to hold the input.
+ *
+ * N-Triples, and N-Quads without contexts, are split by line without a full
+ * parse; other formats are parsed with Rio and uploaded as N-Quads chunks.
+ * With document ingestion enabled every format is parsed and chunks are
+ * written as triples documents. Blank nodes are skolemized, labels scoped
+ * to the load, so that they keep their identity across chunks. Inside a
+ * transaction chunks are uploaded one at a time. A loader is used for a
+ * single load.
+ *
+ */
+public class TripleBulkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(TripleBulkLoader.class);
+
+    private static final AtomicInteger loaderCount = new AtomicInteger();
+
+    public static final int DEFAULT_CHUNK_SIZE = 50000;
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    private final MarkLogicClient client;
+    private final int chunkSize;
+    private final int threads;
+    private final BulkLoadListener listener;
+
+    private final Util util = Util.getInstance();
+    private final String loadId = UUID.randomUUID().toString();
+
+    private ExecutorService uploader;
+    private Semaphore slots;
+    private int chunks = 0;
+    private final AtomicLong loaded = new AtomicLong();
+    private final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param client
+     * @param chunkSize - statements per chunk
+     * @param threads - chunks uploaded concurrently
+     * @param listener - progress listener, may be null
+     */
+    public TripleBulkLoader(MarkLogicClient client, int chunkSize, int threads, BulkLoadListener listener) {
+        if (chunkSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Bulk load needs a positive chunk size and thread count.");
+        }
+        this.client = client;
+        this.chunkSize = chunkSize;
+        this.threads = client.isActiveTransaction() ? 1 : threads;
+        this.listener = listener != null ? listener : new BulkLoadListener() {};
+    }
+
+    /**
+     * Loads the input, waiting until every chunk is uploaded.
+     *
+     * @param in
+     * @param baseURI
+     * @param dataFormat
+     * @param contexts
+     * @return number of statements loaded
+     * @throws RDFParseException
+     * @throws MarkLogicRdf4jException if the input could not be read or any chunk failed
+     */
+    public long load(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
+        if (uploader != null) {
+            throw new IllegalStateException("Bulk loader already used.");
+        }
+        int loader = loaderCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        uploader = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "marklogic-rdf4j-bulk-" + loader + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // bounds the chunks held in memory
+        slots = new Semaphore(threads * 2);
+        try {
+            boolean lines = dataFormat.equals(RDFFormat.NTRIPLES) || (dataFormat.equals(RDFFormat.NQUADS) && contexts.length == 0);
+            if (lines && !client.canWriteDocuments()) {
+                splitLines(in, baseURI, dataFormat, contexts);
+            } else {
+                splitParsed(in, baseURI, dataFormat, contexts);
+            }
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException("Could not read bulk load input.", e);
+        } catch (RDFHandlerException e) {
+            throw new MarkLogicRdf4jException("Could not split bulk load input.", e);
+        } finally {
+            awaitUploads();
+        }
+        if (!failures.isEmpty()) {
+            throw new MarkLogicRdf4jException(failures.size() + " of " + chunks + " bulk load chunks failed.", failures.get(0));
+        }
+        log.debug("bulk loaded {} statements in {} chunks", loaded.get(), chunks);
+        return loaded.get();
+    }
+
+    /**
+     * Splits a line based input into chunks of raw lines, parsing only lines
+     * with blank nodes.
+     */
+    private void splitLines(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        StringBuilder chunk = new StringBuilder();
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.contains("_:")) {
+                appendSkolemized(chunk, trimmed, baseURI, dataFormat);
+            } else {
+                chunk.append(trimmed).append('\n');
+            }
+            if (++count == chunkSize) {
+                submitLines(chunk.toString(), count, baseURI, dataFormat, contexts);
+                chunk.setLength(0);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            submitLines(chunk.toString(), count, baseURI, dataFormat, contexts);
+        }
+    }
+
+    private void appendSkolemized(StringBuilder chunk, String line, String baseURI, RDFFormat dataFormat) throws IOException {
+        RDFParser parser = Rio.createParser(dataFormat);
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        StatementCollector collector = new StatementCollector();
+        parser.setRDFHandler(collector);
+        parser.parse(new StringReader(line), baseURI == null ? "" : baseURI);
+        for (Statement st : collector.getStatements()) {
+            chunk.append(NTriplesUtil.toNTriplesString(skolemize(st.getSubject()))).append(' ')
+                    .append(NTriplesUtil.toNTriplesString(st.getPredicate())).append(' ')
+                    .append(NTriplesUtil.toNTriplesString(skolemize(st.getObject())));
+            if (st.getContext() != null) {
+                chunk.append(' ').append(NTriplesUtil.toNTriplesString(skolemize(st.getContext())));
+            }
+            chunk.append(" .\n");
+        }
+    }
+
+    /**
+     * Parses the input with Rio, uploading chunks as N-Quads.
+     */
+    private void splitParsed(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws IOException {
+        RDFParser parser = Rio.createParser(dataFormat);
+        parser.setRDFHandler(new AbstractRDFHandler() {
+            private TripleBuffer chunk = new TripleBuffer(false);
+
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                Resource s = (Resource) skolemize(st.getSubject());
+                IRI p = st.getPredicate();
+                Value o = skolemize(st.getObject());
+                if (contexts.length > 0) {
+                    chunk.add(s, p, o, contexts);
+                } else if (st.getContext() != null) {
+                    chunk.add(s, p, o, (Resource) skolemize(st.getContext()));
+                } else {
+                    chunk.add(s, p, o);
+                }
+                if (chunk.size() >= chunkSize) {
+                    submitBuffer(chunk);
+                    chunk = new TripleBuffer(false);
+                }
+            }
+
+            @Override
+            public void endRDF() throws RDFHandlerException {
+                if (!chunk.isEmpty()) {
+                    submitBuffer(chunk);
+                }
+            }
+        });
+        parser.parse(in, baseURI == null ? "" : baseURI);
+    }
+
+    private Value skolemize(Value value) {
+        if (value instanceof org.eclipse.rdf4j.model.BNode) {
+            return util.skolemize(vf.createBNode(loadId + "-" + value.stringValue()));
+        }
+        return value;
+    }
+
+    private void submitLines(String lines, long statements, String baseURI, RDFFormat dataFormat, Resource... contexts) {
+        byte[] bytes = lines.getBytes(StandardCharsets.UTF_8);
+        if (contexts.length <= 1) {
+            submit(statements, () -> client.sendAdd(new ByteArrayInputStream(bytes), baseURI, dataFormat, contexts));
+            return;
+        }
+        // a stream is read once, so each context gets its own
+        submit(statements, () -> {
+            for (Resource context : contexts) {
+                client.sendAdd(new ByteArrayInputStream(bytes), baseURI, dataFormat, context);
+            }
+        });
+    }
+
+    private void submitBuffer(TripleBuffer buffer) {
+        if (client.canWriteDocuments()) {
+            submit(buffer.size(), () -> client.sendAddDocuments(buffer));
+        } else {
+            submit(buffer.size(), () -> client.sendAdd(buffer));
+        }
+    }
+
+    private interface Upload {
+        void run() throws Exception;
+    }
+
+    /**
+     * Hands a chunk to the upload threads, blocking while too many chunks are in memory.
+     */
+    private void submit(long statements, Upload upload) throws MarkLogicRdf4jException {
+        int chunk = chunks++;
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicRdf4jException("Interrupted waiting to upload bulk load chunk.", e);
+        }
+        uploader.execute(() -> {
+            try {
+                upload.run();
+                listener.chunkLoaded(chunk, statements, loaded.addAndGet(statements));
+            } catch (Exception e) {
+                log.error("Could not load bulk load chunk {} of {} statements: {}", chunk, statements, e.getLocalizedMessage());
+                failures.add(e);
+                listener.chunkFailed(chunk, statements, e);
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    private void awaitUploads() throws MarkLogicRdf4jException {
+        uploader.shutdown();
+        try {
+            while (!uploader.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("waiting for bulk load uploads, {} statements loaded", loaded.get());
+            }
+        } catch (InterruptedException e) {
+            uploader.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MarkLogicRdf4jException("Interrupted waiting for bulk load uploads.", e);
+        }
+    }
+
+}
@@ -14,67 +14,150 @@
  * limitations under the License.
  */
 /**
- * A timer that flushes a cache of triple add statements
- * periodically. The cache is represented as a Model.
+ * A cache of triple statements flushed when full or aged,
+ * from a scheduler shared by all caches. The cache is represented as a TripleBuffer.
  */
 package com.marklogic.semantics.rdf4j.client;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import org.eclipse.rdf4j.model.*;
-import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
+import org.eclipse.rdf4j.query.parser.sparql.SPARQLUtil;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Timer implements write cache for efficient adding of triples.
  *
+ * The cache is double buffered; when the active buffer is full it is
+ * swapped for a fresh one and handed to a pool of background flushers
+ * through a bounded queue. When the queue is full callers either block
+ * until a flusher frees up, or fail fast if so configured.
+ *
+ * Ticks run on one scheduler thread shared by every cache. A cache is only
+ * ticked while it holds statements, at the moment its oldest statement
+ * reaches cacheMillis, or every MIN_TICK_MILLIS while a full buffer waits
+ * for a flusher; an idle cache is parked and costs no wakeups or threads.
+ *
+ * The cache knows which graphs its buffered and in flight statements belong
+ * to, so readers only need to flush it when it holds statements of a graph
+ * they read.
  *
  */
-public abstract class TripleCache extends TimerTask {
+public abstract class TripleCache implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(TripleCache.class);
 
-    protected Model cache;
+    private static final AtomicInteger flusherCount = new AtomicInteger();
+
+    private static final ScheduledThreadPoolExecutor scheduler = newScheduler();
+
+    protected TripleBuffer cache;
     protected MarkLogicClient client;
 
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
     public static final long DEFAULT_CACHE_SIZE = 750;
 
+    public static final long DEFAULT_CACHE_BYTES = 1024 * 1024;
+
+    // delimiters, whitespace and line ending of a serialized statement
+    private static final long STATEMENT_OVERHEAD = 8;
+
     public static final long DEFAULT_CACHE_MILLIS = 800;
     public static final long DEFAULT_INITIAL_DELAY = 50;
+    public static final long MIN_TICK_MILLIS = 10;
+
+    // flusher threads of an idle cache exit after this
+    private static final long FLUSHER_KEEP_ALIVE_SECONDS = 30;
+
+    public static final int DEFAULT_FLUSHERS = 1;
+    public static final int DEFAULT_QUEUE_DEPTH = 0;
 
     protected RDFFormat format = RDFFormat.NQUADS;
 
     protected long cacheSize;
 
+    protected long cacheBytes = DEFAULT_CACHE_BYTES;
+
     protected long cacheMillis;
 
+    protected boolean deduplicate = true;
+
+    // estimated serialized size of the active buffer
+    private long bufferedBytes = 0;
+
     protected Date lastCacheAccess = new Date();
 
+    // one permit per sealed batch that is queued or being flushed
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final boolean failFast;
+    private final ThreadPoolExecutor flusher;
+    private final AtomicReference<Exception> flushFailure = new AtomicReference<>();
+
+    // sealed batches queued or being flushed, guarded by this
+    protected final List<TripleBuffer> pending = new ArrayList<>();
+
+    // next tick, null while parked; guarded by this
+    private ScheduledFuture<?> tick;
+    private boolean stopped = false;
+
     /**
      * Creates a new TripleCache object, using the supplied MarkLogicClient.
      *
      * @param client
      */
     public TripleCache(MarkLogicClient client) {
-        super();
-        this.client = client;
-        this.cache = new LinkedHashModel();
-        this.cacheSize = DEFAULT_CACHE_SIZE;
-        this.cacheMillis = DEFAULT_CACHE_MILLIS;
+        this(client, DEFAULT_CACHE_SIZE);
     }
 
     public TripleCache(MarkLogicClient client, long cacheSize) {
+        this(client, cacheSize, DEFAULT_FLUSHERS, DEFAULT_QUEUE_DEPTH, false);
+    }
+
+    /**
+     * Creates a new TripleCache object with a flush pipeline of the given shape.
+     *
+     * @param client
+     * @param cacheSize - size (# triples) of each batch
+     * @param flushers - number of batches flushed concurrently
+     * @param queueDepth - number of sealed batches waiting for a flusher
+     * @param failFast - if true, add() throws instead of blocking when the queue is full
+     */
+    public TripleCache(MarkLogicClient client, long cacheSize, int flushers, int queueDepth, boolean failFast) {
         super();
+        if (flushers < 1 || queueDepth < 0) {
+            throw new IllegalArgumentException("Flush pipeline needs at least one flusher and a non-negative queue depth.");
+        }
         this.client = client;
-        this.cache = new LinkedHashModel();
+        this.cache = new TripleBuffer(deduplicate);
+        this.cacheMillis = DEFAULT_CACHE_MILLIS;
+        this.maxInFlight = flushers + queueDepth;
+        this.failFast = failFast;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.flusher = new ThreadPoolExecutor(flushers, flushers, FLUSHER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), newFlusherThreadFactory());
+        this.flusher.allowCoreThreadTimeOut(true);
         setCacheSize(cacheSize);
     }
 
@@ -96,6 +179,46 @@ public abstract class TripleCache extends TimerTask {
         this.cacheSize = cacheSize;
     }
 
+    /**
+     * return cacheBytes, the estimated serialized size that triggers a flush
+     *
+     * @return
+     */
+    public long getCacheBytes() {
+        return this.cacheBytes;
+    }
+
+    /**
+     * set cacheBytes, the estimated serialized size that triggers a flush
+     *
+     * @param cacheBytes
+     */
+    public void setCacheBytes(long cacheBytes) {
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * return true if statements already buffered are ignored
+     *
+     * @return
+     */
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * set false to append statements without checking whether they are already
+     * buffered, taking effect from the next batch
+     *
+     * @param deduplicate
+     */
+    public synchronized void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        if (cache.isEmpty()) {
+            cache = new TripleBuffer(deduplicate);
+        }
+    }
+
     /**
      * getter cacheMillis
      *
@@ -106,73 +229,399 @@ public abstract class TripleCache extends TimerTask {
     }
 
     /**
-     * setter cacheMillis
+     * setter cacheMillis, the longest a statement waits in the cache
      *
      * @param cacheMillis
      */
-    public void setCacheMillis(long cacheMillis) {
+    public synchronized void setCacheMillis(long cacheMillis) {
         this.cacheMillis = cacheMillis;
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+            reschedule();
+        }
+    }
+
+    /**
+     * Returns number of sealed batches queued or being flushed.
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        return maxInFlight - inFlight.availablePermits();
     }
 
     /**
-     * Tests to see if we should flush cache.
+     * Tests to see if we should flush cache, then schedules the next tick.
+     * Skips the flush if the flush queue is full, flushers are already busy.
      *
      */
     @Override
-    public synchronized void run(){
-        Date now = new Date();
-        if ( !cache.isEmpty() &&
-                ((cache.size() > cacheSize - 1) || (now.getTime() - lastCacheAccess.getTime() > cacheMillis))) {
-            try {
-                flush();
-            } catch (RepositoryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (MalformedQueryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (UpdateExecutionException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (IOException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
+    public void run(){
+        TripleBuffer batch = null;
+        synchronized (this) {
+            tick = null;
+            Date now = new Date();
+            if ( !cache.isEmpty() &&
+                    (isFull() || (now.getTime() - lastCacheAccess.getTime() >= cacheMillis)) &&
+                    inFlight.tryAcquire()) {
+                batch = seal();
+            }
+        }
+        try {
+            if (batch != null) {
+                dispatch(batch, false);
+            }
+        } catch (Exception e) {
+            log.error(e.getLocalizedMessage());
+        } finally {
+            synchronized (this) {
+                reschedule();
+            }
+        }
+    }
+
+    protected abstract void flush(TripleBuffer batch) throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException;
+
+    /**
+     * Returns the prefix of the metrics of this cache.
+     *
+     * @return
+     */
+    protected String getMetricsName() {
+        return "writecache";
+    }
+
+    /**
+     * Forces the cache to flush if there is anything in it, and waits
+     * until every batch handed to the background flusher is written.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    public void forceRun() throws MarkLogicRdf4jException {
+        TripleBuffer batch;
+        synchronized (this) {
+            log.debug(String.valueOf(cache.size()));
+            batch = cache.isEmpty() ? null : seal();
+        }
+        if (batch != null) {
+            dispatch(batch, true);
+        }
+        awaitFlushed();
+        checkFailure();
+    }
+
+    /**
+     * Add triple to cache.
+     */
+    public void add(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        checkFailure();
+        TripleBuffer batch = null;
+        boolean acquire = false;
+        synchronized (this) {
+            if (cache.isEmpty()) {
+                // the age of a batch counts from its first statement
+                lastCacheAccess = new Date();
+            }
+            if (isFull()) {
+                // left full by an earlier add that found the queue full (fail fast)
+                if (!inFlight.tryAcquire()) {
+                    throw new MarkLogicRdf4jException("Could not add to write cache, flush queue is full.");
+                }
+                batch = seal();
+            }
+            if (cache.add(subject,predicate,object,contexts)) {
+                bufferedBytes += estimateSize(subject, predicate, object, contexts);
+            }
+            if (batch == null && isFull()) {
+                if (!failFast) {
+                    batch = seal();
+                    acquire = true;
+                } else if (inFlight.tryAcquire()) {
+                    batch = seal();
+                }
+            }
+            reschedule();
+        }
+        if (batch != null) {
+            dispatch(batch, acquire);
+        }
+    }
+
+    /**
+     * Drops statements from the active buffer before they are flushed.
+     * With no contexts, matching statements in every context are dropped.
+     *
+     * @return true if the buffer changed
+     */
+    public synchronized boolean discard(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        return cache.remove(subject, predicate, object, contexts);
+    }
+
+    /**
+     * Checks if statements of one of the graphs are buffered or being flushed,
+     * a null graph being the default graph; null graphs checks for any statement.
+     *
+     * @param graphs
+     * @return
+     */
+    public synchronized boolean isDirty(Collection<? extends Resource> graphs) {
+        if (graphs == null) {
+            return !cache.isEmpty() || !pending.isEmpty();
+        }
+        if (touches(cache, graphs)) {
+            return true;
+        }
+        for (TripleBuffer batch : pending) {
+            if (touches(batch, graphs)) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Checks if a buffer holds statements of one of the graphs, must hold the cache lock.
+     *
+     * @param buffer
+     * @param graphs
+     * @return
+     */
+    protected boolean touches(TripleBuffer buffer, Collection<? extends Resource> graphs) {
+        if (buffer.isEmpty()) {
+            return false;
+        }
+        for (Resource graph : graphs) {
+            if (graph == null || graph.stringValue().equals(DEFAULT_GRAPH_URI)) {
+                if (buffer.hasContext(null)) {
+                    return true;
+                }
+            }
+            if (graph != null && buffer.hasContext(graph)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the cache, cancelling its next tick and discarding the background flusher.
+     *
+     * @return false if the cache was already stopped
+     */
+    public synchronized boolean cancel() {
+        if (stopped) {
+            return false;
+        }
+        stopped = true;
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+        flusher.shutdown();
+        return true;
+    }
+
+    /**
+     * Schedules the next tick unless one is pending, the cache is stopped or
+     * empty, must hold the cache lock.
+     */
+    private void reschedule() {
+        if (tick != null || stopped || cache.isEmpty()) {
+            return;
+        }
+        long delay = MIN_TICK_MILLIS;
+        if (!isFull()) {
+            long age = new Date().getTime() - lastCacheAccess.getTime();
+            delay = Math.max(MIN_TICK_MILLIS, cacheMillis - age);
+        }
+        try {
+            tick = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.error("Could not schedule cache flush: {}", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Checks if the active buffer reached cacheSize or cacheBytes, must hold the cache lock.
+     *
+     * @return
+     */
+    private boolean isFull() {
+        return cache.size() > cacheSize - 1 || bufferedBytes >= cacheBytes;
+    }
+
+    /**
+     * Estimates the serialized size of a statement, once per context.
+     *
+     * @return estimated size in bytes
+     */
+    protected static long estimateSize(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        long size = STATEMENT_OVERHEAD + termSize(subject) + termSize(predicate) + termSize(object);
+        if (contexts.length == 0) {
+            return size;
+        }
+        long total = 0;
+        for (Resource context : contexts) {
+            total += size + (context == null ? 0 : termSize(context));
+        }
+        return total;
+    }
+
+    private static long termSize(Value value) {
+        if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            String lang = lit.getLanguage().orElse(null);
+            long suffix = lang != null ? lang.length() + 1 : lit.getDatatype().stringValue().length() + 4;
+            return lit.getLabel().length() + 2 + suffix;
+        }
+        return value.stringValue().length() + 2;
     }
 
-    protected abstract void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException;
+    /**
+     * Swaps the active buffer for a fresh one, must hold the cache lock.
+     *
+     * @return the sealed batch
+     */
+    private TripleBuffer seal() {
+        TripleBuffer batch = cache;
+        MetricsRecorder metrics = client.getMetricsRecorder();
+        metrics.recordAmount(getMetricsName() + ".batch.triples", batch.size());
+        metrics.recordAmount(getMetricsName() + ".batch.bytes", bufferedBytes);
+        cache = new TripleBuffer(deduplicate);
+        bufferedBytes = 0;
+        lastCacheAccess = new Date();
+        pending.add(batch);
+        metrics.recordAmount(getMetricsName() + ".queue", pending.size());
+        return batch;
+    }
 
     /**
-     * Forces the cache to flush if there is anything in it.
+     * Hands a sealed batch to the background flushers, blocking while
+     * the flush queue is full.
      *
+     * @param batch
+     * @param acquire - false if the caller already holds a queue slot
      * @throws MarkLogicRdf4jException
      */
-    public synchronized void forceRun() throws MarkLogicRdf4jException {
-        log.debug(String.valueOf(cache.size()));
-        if( !cache.isEmpty()) {
+    private void dispatch(TripleBuffer batch, boolean acquire) throws MarkLogicRdf4jException {
+        if (acquire) {
             try {
-                flush();
-            } catch (RepositoryException e) {
-                throw new MarkLogicRdf4jException("Could not flush write cache, encountered repository issue.",e);
-            } catch (MalformedQueryException e) {
-                throw new MarkLogicRdf4jException("Could not flush write cache, query was malformed.",e);
-            } catch (UpdateExecutionException e) {
-                throw new MarkLogicRdf4jException("Could not flush write cache, query update failed.",e);
-            } catch (IOException e) {
-                throw new MarkLogicRdf4jException("Could not flush write cache, encountered IO issue.",e);
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MarkLogicRdf4jException("Interrupted waiting to flush write cache.", e);
             }
         }
+        try {
+            flusher.execute(() -> {
+                MetricsRecorder metrics = client.getMetricsRecorder();
+                long begin = System.nanoTime();
+                try {
+                    flush(batch);
+                } catch (Exception e) {
+                    log.error("Could not flush {} cached triples: {}", batch.size(), e.getLocalizedMessage());
+                    metrics.increment(getMetricsName() + ".flush.errors");
+                    flushFailure.compareAndSet(null, e);
+                } finally {
+                    metrics.recordTime(getMetricsName() + ".flush.latency", System.nanoTime() - begin);
+                    flushed(batch);
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flushed(batch);
+            inFlight.release();
+            throw new MarkLogicRdf4jException("Could not flush write cache, cache is stopped.", e);
+        }
     }
 
     /**
-     * Add triple to cache Model.
+     * Drops a batch from pending once it is written, or failed.
+     *
+     * @param batch
      */
-    public synchronized void add(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
-        cache.add(subject,predicate,object,contexts);
-        if( cache.size() > cacheSize - 1){
-            forceRun();
+    private synchronized void flushed(TripleBuffer batch) {
+        pending.removeIf(b -> b == batch);
+        notifyAll();
+    }
+
+    /**
+     * Waits until no sealed batch is queued or being flushed.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    private void awaitFlushed() throws MarkLogicRdf4jException {
+        try {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicRdf4jException("Interrupted waiting for write cache to flush.", e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Rethrows the first failure raised by the background flusher.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    private void checkFailure() throws MarkLogicRdf4jException {
+        Exception e = flushFailure.getAndSet(null);
+        if (e == null) {
+            return;
+        }
+        if (e instanceof MarkLogicRdf4jException) {
+            throw (MarkLogicRdf4jException) e;
+        } else if (e instanceof MalformedQueryException) {
+            throw new MarkLogicRdf4jException("Could not flush write cache, query was malformed.",e);
+        } else if (e instanceof UpdateExecutionException) {
+            throw new MarkLogicRdf4jException("Could not flush write cache, query update failed.",e);
+        } else if (e instanceof IOException) {
+            throw new MarkLogicRdf4jException("Could not flush write cache, encountered IO issue.",e);
+        } else {
+            throw new MarkLogicRdf4jException("Could not flush write cache, encountered repository issue.",e);
+        }
+    }
+
+    /**
+     * Renders a term in SPARQL syntax.
+     *
+     * @param value
+     * @return
+     */
+    protected static String sparqlTerm(Value value) {
+        if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            StringBuilder sb = new StringBuilder();
+            sb.append("\"").append(SPARQLUtil.encodeString(lit.getLabel())).append("\"");
+            String lang = lit.getLanguage().orElse(null);
+            if (lang != null) {
+                sb.append("@").append(lang);
+            } else {
+                sb.append("^^<").append(lit.getDatatype().stringValue()).append(">");
+            }
+            return sb.toString();
+        }
+        return "<" + value.stringValue() + ">";
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "marklogic-rdf4j-cache-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ThreadFactory newFlusherThreadFactory() {
+        return r -> {
+            Thread t = new Thread(r, "marklogic-rdf4j-flusher-" + flusherCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+}
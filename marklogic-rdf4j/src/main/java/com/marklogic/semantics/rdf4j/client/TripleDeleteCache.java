@@ -18,26 +18,38 @@ package com.marklogic.semantics.rdf4j.client;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import org.eclipse.rdf4j.model.*;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
-import org.eclipse.rdf4j.query.parser.sparql.SPARQLUtil;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Delete cache to optimize performance by batching the requests.
+ *
+ * Statements removed from every graph are buffered under the ALL_GRAPHS
+ * context and flushed as a single DELETE ... WHERE ... VALUES operation,
+ * statements removed from named graphs as DELETE DATA.
+ *
+ * Before a batch is sent, every add already handed to the write cache is
+ * flushed, and adds of a statement with a delete still in flight wait for
+ * it, so the server sees adds and removes in the order they were made.
  */
 public class TripleDeleteCache extends TripleCache {
 
     private static final Logger log = LoggerFactory.getLogger(TripleDeleteCache.class);
 
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
+    static final IRI ALL_GRAPHS = SimpleValueFactory.getInstance().createIRI("http://marklogic.com/semantics/rdf4j#all-graphs");
+
     public TripleDeleteCache(MarkLogicClient client) {
         super(client);
     }
@@ -45,63 +57,135 @@ public class TripleDeleteCache extends TripleCache {
     public TripleDeleteCache(MarkLogicClient client, long cacheSize) {
         super(client, cacheSize);
     }
+
+    public TripleDeleteCache(MarkLogicClient client, long cacheSize, int flushers, int queueDepth, boolean failFast) {
+        super(client, cacheSize, flushers, queueDepth, failFast);
+    }
+
     /**
-     * Flushes the cache to the server, writing triples as graph.
+     * Reconciles an add with buffered removes of the same statement. A buffered
+     * remove from the same graph cancels out, and the add waits for any sealed
+     * remove of the statement that is still in flight.
      *
+     * @return true if a remove from every graph is buffered, which must be
+     * flushed before the add
      * @throws MarkLogicRdf4jException
      */
-    
-    protected synchronized void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
-        if (cache.isEmpty()) { return; }
-        StringBuffer entireQuery = new StringBuffer();
-        SPARQLQueryBindingSet bindingSet = new SPARQLQueryBindingSet();
-
-        for (Namespace ns :cache.getNamespaces()){
-            entireQuery.append("PREFIX "+ns.getPrefix()+": <"+ns.getName()+">. ");
+    public synchronized boolean reconcileAdd(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        Resource[] ctxs = contexts.length == 0 ? new Resource[] { null } : contexts;
+        cache.remove(subject, predicate, object, ctxs);
+        try {
+            while (isPending(subject, predicate, object, ctxs)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicRdf4jException("Interrupted waiting for delete cache to flush.", e);
         }
-        entireQuery.append("DELETE DATA { ");
+        return cache.contains(subject, predicate, object, ALL_GRAPHS);
+    }
 
-        Set<Resource> distinctCtx = new HashSet<Resource>();
-        for (Resource context :cache.contexts()) {
-            distinctCtx.add(context);
-        }
+    /**
+     * A remove from every graph touches any graph.
+     */
+    @Override
+    protected boolean touches(TripleBuffer buffer, Collection<? extends Resource> graphs) {
+        return super.touches(buffer, graphs) || (!buffer.isEmpty() && buffer.hasContext(ALL_GRAPHS));
+    }
 
-        for (Resource ctx : distinctCtx) {
-               if (ctx != null) {
-                   entireQuery.append(" GRAPH <" + ctx + "> { ");
-               }
-                for (Statement stmt : cache.filter(null, null, null, ctx)) {
-                    entireQuery.append("<" + stmt.getSubject().stringValue() + "> ");
-                    entireQuery.append("<" + stmt.getPredicate().stringValue() + "> ");
-                    Value object=stmt.getObject();
-                    if (object instanceof Literal) {
-                        Literal lit = (Literal) object;
-                        entireQuery.append("\"");
-                        entireQuery.append(SPARQLUtil.encodeString(lit.getLabel()));
-                        entireQuery.append("\"");
-                        if(null == lit.getLanguage().orElse(null)) {
-                            entireQuery.append("^^<" + lit.getDatatype().stringValue() + ">");
-                        }else{
-                            entireQuery.append("@" + lit.getLanguage().toString());
-                        }
-                    } else {
-                        entireQuery.append("<" + object.stringValue() + "> ");
-                    }
-                    entireQuery.append(".");
-                }
-                if (ctx != null) {
-                    entireQuery.append(" }");
-                }
+    private boolean isPending(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        for (TripleBuffer batch : pending) {
+            if (batch.contains(subject, predicate, object, contexts) || batch.contains(subject, predicate, object, ALL_GRAPHS)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        entireQuery.append("} ");
-        log.info(entireQuery.toString());
-        client.sendUpdateQuery(entireQuery.toString(),bindingSet,false,null);
-        lastCacheAccess = new Date();
-        //log.info("success writing cache: {}",String.valueOf(cache.size()));
-        cache.clear();
+    @Override
+    protected String getMetricsName() {
+        return "deletecache";
+    }
 
+    /**
+     * Flushes the cache to the server, deleting triples as graph.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    protected void flush(TripleBuffer batch) throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        if (batch.isEmpty()) { return; }
+        // adds made before these removes must reach the server first
+        client.flushWriteCache();
+
+        String entireQuery = toDeleteQuery(batch, Collections.<Value[]>emptyList());
+        SPARQLQueryBindingSet bindingSet = new SPARQLQueryBindingSet();
+
+        log.debug(entireQuery);
+        client.sendUpdateQuery(entireQuery,bindingSet,false,null);
+        log.debug("success deleting cache: {}",String.valueOf(batch.size()));
     }
 
+    /**
+     * Builds a single update removing every statement in batch, fully bound
+     * statements as DELETE DATA and ALL_GRAPHS statements as one
+     * DELETE ... WHERE ... VALUES, followed by one DELETE WHERE per pattern.
+     *
+     * @param batch fully bound statements
+     * @param patterns subject, predicate, object and graph of each pattern, null
+     *                 terms match anything and an ALL_GRAPHS graph every graph
+     * @return the update, or an empty string if there is nothing to remove
+     */
+    static String toDeleteQuery(TripleBuffer batch, List<Value[]> patterns) throws IOException {
+        StringBuilder entireQuery = new StringBuilder();
+        String[] terms = batch.renderTerms(TripleCache::sparqlTerm);
+        int allGraphs = batch.idOf(ALL_GRAPHS);
+
+        StringBuilder deleteData = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        int[] current = { TripleBuffer.NOT_FOUND };
+        batch.forEachByContext((s, p, o, c) -> {
+            if (c == allGraphs) {
+                values.append("( ").append(terms[s]).append(" ").append(terms[p]).append(" ").append(terms[o]).append(" ) ");
+                return;
+            }
+            if (c != current[0]) {
+                if (current[0] != TripleBuffer.NOT_FOUND) {
+                    deleteData.append("} ");
+                }
+                deleteData.append("GRAPH <").append(c == TripleBuffer.DEFAULT_GRAPH ? DEFAULT_GRAPH_URI : batch.term(c).stringValue()).append("> { ");
+                current[0] = c;
+            }
+            deleteData.append(terms[s]).append(" ").append(terms[p]).append(" ").append(terms[o]).append(" . ");
+        });
+
+        if (deleteData.length() > 0) {
+            entireQuery.append("DELETE DATA { ").append(deleteData).append("} } ");
+        }
+        if (values.length() > 0) {
+            if (entireQuery.length() > 0) {
+                entireQuery.append("; ");
+            }
+            entireQuery.append("DELETE { GRAPH ?g { ?s ?p ?o } } WHERE { VALUES (?s ?p ?o) { ")
+                    .append(values)
+                    .append("} GRAPH ?g { ?s ?p ?o } } ");
+        }
+        for (Value[] pattern : patterns) {
+            if (entireQuery.length() > 0) {
+                entireQuery.append("; ");
+            }
+            entireQuery.append("DELETE WHERE { GRAPH ");
+            Value ctx = pattern[3];
+            if (ALL_GRAPHS.equals(ctx)) {
+                entireQuery.append("?g ");
+            } else {
+                entireQuery.append("<").append(ctx == null ? DEFAULT_GRAPH_URI : ctx.stringValue()).append("> ");
+            }
+            entireQuery.append("{ ")
+                    .append(pattern[0] == null ? "?s" : sparqlTerm(pattern[0])).append(" ")
+                    .append(pattern[1] == null ? "?p" : sparqlTerm(pattern[1])).append(" ")
+                    .append(pattern[2] == null ? "?o" : sparqlTerm(pattern[2])).append(" . } } ");
+        }
+        return entireQuery.toString();
+    }
 
 }
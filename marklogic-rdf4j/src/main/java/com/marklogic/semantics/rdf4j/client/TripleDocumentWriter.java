@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.WriteBatch;
+import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.WriteEvent;
+import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.semantics.Capability;
+import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes buffered triples as managed triples documents through a Data
+ * Movement SDK WriteBatcher, spreading the writes across every host of the
+ * cluster with host failover and batch retries.
+ *
+ * Each document holds up to TRIPLES_PER_DOCUMENT triples of one graph as
+ * sem:triples XML, in the collection of its graph. Documents are written
+ * outside any transaction.
+ *
+ * The batcher is shared by concurrent callers, so failures are kept per
+ * document uri and each caller checks only the documents it queued.
+ *
+ */
+public class TripleDocumentWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(TripleDocumentWriter.class);
+
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
+    private static final String URI_PREFIX = "/triplestore/";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_RETRIES = 3;
+    public static final int TRIPLES_PER_DOCUMENT = 100;
+
+    private final DataMovementManager dmm;
+    private final WriteBatcher batcher;
+    private final JobTicket ticket;
+    private final int retries;
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    /**
+     * @param databaseClient
+     * @param batchSize - documents per batch
+     * @param threadCount - batches written concurrently
+     * @param retries - retries of a failed batch
+     */
+    public TripleDocumentWriter(DatabaseClient databaseClient, int batchSize, int threadCount, int retries) {
+        if (batchSize < 1 || threadCount < 1 || retries < 0) {
+            throw new IllegalArgumentException("Document ingestion needs a positive batch size and thread count.");
+        }
+        this.retries = retries;
+        this.dmm = databaseClient.newDataMovementManager();
+        this.batcher = dmm.newWriteBatcher()
+                .withBatchSize(batchSize)
+                .withThreadCount(threadCount)
+                .onBatchFailure(this::retry);
+        this.ticket = dmm.startJob(batcher);
+    }
+
+    /**
+     * Queues the triples of a buffer as documents, written once a batch fills
+     * or on flush(uris).
+     *
+     * @param buffer
+     * @param graphPerms - permissions of the documents, may be null
+     * @return uris of the documents queued, to pass to flush(uris)
+     * @throws MarkLogicRdf4jException if a term holds a character XML 1.0 can't carry, nothing is queued then
+     */
+    public Set<String> write(TripleBuffer buffer, GraphPermissions graphPerms) throws MarkLogicRdf4jException {
+        String[] text;
+        String[] attributes;
+        try {
+            text = buffer.renderTerms(value -> escape(value.stringValue()));
+            attributes = buffer.renderTerms(TripleDocumentWriter::objectAttributes);
+        } catch (IllegalArgumentException e) {
+            throw new MarkLogicRdf4jException("Could not write triples documents: " + e.getMessage());
+        }
+        Set<String> uris = new HashSet<>();
+        Map<Integer, DocumentMetadataHandle> metadata = new HashMap<>();
+        StringBuilder doc = new StringBuilder();
+        int[] current = { TripleBuffer.NOT_FOUND, 0 };
+        try {
+            buffer.forEachByContext((s, p, o, c) -> {
+                if (c != current[0] || current[1] == TRIPLES_PER_DOCUMENT) {
+                    if (current[1] > 0) {
+                        uris.add(add(doc, metadata.get(current[0])));
+                    }
+                    metadata.computeIfAbsent(c, id -> newMetadata(id == TripleBuffer.DEFAULT_GRAPH ? DEFAULT_GRAPH_URI : buffer.term(id).stringValue(), graphPerms));
+                    doc.setLength(0);
+                    doc.append("<sem:triples xmlns:sem=\"http://marklogic.com/semantics\">");
+                    current[0] = c;
+                    current[1] = 0;
+                }
+                doc.append("<sem:triple><sem:subject>").append(text[s]).append("</sem:subject>")
+                        .append("<sem:predicate>").append(text[p]).append("</sem:predicate>")
+                        .append("<sem:object").append(attributes[o]).append(">").append(text[o]).append("</sem:object></sem:triple>");
+                current[1]++;
+            });
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException(e);
+        }
+        if (current[1] > 0) {
+            uris.add(add(doc, metadata.get(current[0])));
+        }
+        return uris;
+    }
+
+    /**
+     * Writes every queued document, waiting for the batches to finish, and
+     * checks the documents of uris.
+     *
+     * @param uris - as returned by write
+     * @throws MarkLogicRdf4jException if a batch holding one of uris failed after its retries
+     */
+    public void flush(Set<String> uris) throws MarkLogicRdf4jException {
+        batcher.flushAndWait();
+        Throwable cause = null;
+        int failed = 0;
+        for (String uri : uris) {
+            Throwable t = failures.remove(uri);
+            if (t != null) {
+                cause = t;
+                failed++;
+            }
+        }
+        if (cause instanceof Exception) {
+            throw new MarkLogicRdf4jException("Could not write " + failed + " of " + uris.size() + " triples documents.", (Exception) cause);
+        } else if (cause != null) {
+            throw new MarkLogicRdf4jException("Could not write " + failed + " of " + uris.size() + " triples documents: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and stops the job.
+     */
+    public void stop() {
+        try {
+            batcher.flushAndWait();
+        } finally {
+            dmm.stopJob(ticket);
+            dmm.release();
+        }
+    }
+
+    private String add(StringBuilder doc, DocumentMetadataHandle metadata) {
+        doc.append("</sem:triples>");
+        String uri = URI_PREFIX + UUID.randomUUID().toString() + ".xml";
+        batcher.add(uri, metadata, new StringHandle(doc.toString()).withFormat(Format.XML));
+        return uri;
+    }
+
+    private void retry(WriteBatch batch, Throwable throwable) {
+        for (int i = 0; i < retries; i++) {
+            try {
+                log.debug("retrying batch {}: {}", batch.getJobBatchNumber(), throwable.getLocalizedMessage());
+                batcher.retry(batch);
+                return;
+            } catch (Exception e) {
+                throwable = e;
+            }
+        }
+        log.error("Could not write batch of {} triples documents: {}", batch.getItems().length, throwable.getLocalizedMessage());
+        for (WriteEvent event : batch.getItems()) {
+            failures.put(event.getTargetUri(), throwable);
+        }
+    }
+
+    private static DocumentMetadataHandle newMetadata(String graph, GraphPermissions graphPerms) {
+        DocumentMetadataHandle metadata = new DocumentMetadataHandle();
+        metadata.getCollections().add(graph);
+        if (graphPerms != null) {
+            for (Map.Entry<String, Set<Capability>> entry : graphPerms.entrySet()) {
+                for (Capability capability : entry.getValue()) {
+                    metadata.getPermissions().add(entry.getKey(), DocumentMetadataHandle.Capability.valueOf(capability.name()));
+                }
+            }
+        }
+        return metadata;
+    }
+
+    private static String objectAttributes(Value value) {
+        if (!(value instanceof Literal)) {
+            return "";
+        }
+        Literal lit = (Literal) value;
+        String lang = lit.getLanguage().orElse(null);
+        if (lang != null) {
+            return " xml:lang=\"" + escape(lang) + "\"";
+        }
+        return " datatype=\"" + escape(lit.getDatatype().stringValue()) + "\"";
+    }
+
+    /**
+     * Escapes s as XML 1.0 text or attribute value. A CR is written as a
+     * character reference, as parsing turns a literal CR or CRLF into LF.
+     *
+     * @throws IllegalArgumentException if s holds a character XML 1.0 can't carry
+     */
+    private static String escape(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!isXmlChar(s, i)) {
+                throw new IllegalArgumentException(String.format("character U+%04X is not allowed in XML 1.0", (int) c));
+            }
+            String entity;
+            switch (c) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&quot;"; break;
+                case '\r': entity = "&#13;"; break;
+                default: entity = null;
+            }
+            if (entity != null && sb == null) {
+                sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+            }
+            if (sb != null) {
+                if (entity != null) {
+                    sb.append(entity);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private static boolean isXmlChar(String s, int i) {
+        char c = s.charAt(i);
+        if (c < 0x20) {
+            return c == '\t' || c == '\n' || c == '\r';
+        } else if (Character.isHighSurrogate(c)) {
+            return i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1));
+        } else if (Character.isLowSurrogate(c)) {
+            return i > 0 && Character.isHighSurrogate(s.charAt(i - 1));
+        }
+        return c != 0xFFFE && c != 0xFFFF;
+    }
+
+}
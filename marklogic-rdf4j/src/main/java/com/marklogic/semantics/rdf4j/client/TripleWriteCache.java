@@ -17,19 +17,14 @@
 package com.marklogic.semantics.rdf4j.client;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
-import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
-import org.eclipse.rdf4j.query.parser.sparql.SPARQLUtil;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Write cache to optimize performance by batching the requests.
@@ -38,6 +33,8 @@ public class TripleWriteCache extends TripleCache {
 
     private static final Logger log = LoggerFactory.getLogger(TripleWriteCache.class);
 
+    private boolean quadsMode = false;
+
     public TripleWriteCache(MarkLogicClient client) {
         super(client);
     }
@@ -45,63 +42,81 @@ public class TripleWriteCache extends TripleCache {
     public TripleWriteCache(MarkLogicClient client, long cacheSize) {
         super(client, cacheSize);
     }
+
+    public TripleWriteCache(MarkLogicClient client, long cacheSize, int flushers, int queueDepth, boolean failFast) {
+        super(client, cacheSize, flushers, queueDepth, failFast);
+    }
+
+    /**
+     * return true if cache is flushed as N-Quads via the graph store
+     *
+     * @return
+     */
+    public boolean isQuadsMode() {
+        return quadsMode;
+    }
+
+    /**
+     * set true to flush cache as N-Quads via the graph store instead of SPARQL INSERT DATA
+     *
+     * @param quadsMode
+     */
+    public void setQuadsMode(boolean quadsMode) {
+        this.quadsMode = quadsMode;
+    }
+
     /**
      * Flushes the cache to the server, writing triples as graph.
      *
+     * With document ingestion enabled the batch is written as triples
+     * documents. Graph permissions can only be applied through SPARQL update,
+     * so quads mode falls back to INSERT DATA when permissions are set.
+     *
      * @throws MarkLogicRdf4jException
      */
+    protected void flush(TripleBuffer batch) throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        if (batch.isEmpty()) { return; }
+        if (client.canWriteDocuments()) {
+            client.sendAddDocuments(batch);
+        } else if (quadsMode && !client.hasGraphPerms()) {
+            client.sendAdd(batch);
+        } else {
+            flushUpdate(batch);
+        }
+        log.debug("success writing cache: {}",String.valueOf(batch.size()));
+    }
 
-    protected synchronized void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
-        if (cache.isEmpty()) { return; }
+    /**
+     * Sends the batch as a single SPARQL INSERT DATA update, rendering each
+     * distinct term once.
+     *
+     */
+    private void flushUpdate(TripleBuffer batch) throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
         StringBuilder entireQuery = new StringBuilder();
         SPARQLQueryBindingSet bindingSet = new SPARQLQueryBindingSet();
+        String[] terms = batch.renderTerms(TripleCache::sparqlTerm);
 
-        for (Namespace ns :cache.getNamespaces()){
-            entireQuery.append("PREFIX ").append(ns.getPrefix()).append(": <").append(ns.getName()).append(">. ");
-        }
         entireQuery.append("INSERT DATA { ");
-
-        Set<Resource> distinctCtx = new HashSet<>();
-        distinctCtx.addAll(cache.contexts());
-
-        for (Resource ctx : distinctCtx) {
-               if (ctx != null) {
-                   entireQuery.append(" GRAPH <").append(ctx).append("> { ");
-               }
-                for (Statement stmt : cache.filter(null, null, null, ctx)) {
-
-                    entireQuery.append("<").append(stmt.getSubject().stringValue()).append("> ");
-
-                    entireQuery.append("<").append(stmt.getPredicate().stringValue()).append("> ");
-
-                    Value object=stmt.getObject();
-                    if (object instanceof Literal) {
-                        Literal lit = (Literal) object;
-                        entireQuery.append("\"");
-                        entireQuery.append(SPARQLUtil.encodeString(lit.getLabel()));
-                        entireQuery.append("\"");
-                        if(null == lit.getLanguage().orElse(null)) {
-                            entireQuery.append("^^<").append(lit.getDatatype().stringValue()).append(">");
-                        }else{
-                            entireQuery.append("@").append(lit.getLanguage().orElse(null));
-                        }
-                    } else {
-                            entireQuery.append("<").append(object.stringValue()).append("> ");
-                    }
-                    entireQuery.append(".");
-                }
-                if (ctx != null) {
+        int[] current = { TripleBuffer.NOT_FOUND };
+        batch.forEachByContext((s, p, o, c) -> {
+            if (c != current[0]) {
+                if (current[0] >= 0) {
                     entireQuery.append(" }");
                 }
+                if (c >= 0) {
+                    entireQuery.append(" GRAPH ").append(terms[c]).append(" { ");
+                }
+                current[0] = c;
+            }
+            entireQuery.append(terms[s]).append(" ").append(terms[p]).append(" ").append(terms[o]).append(" .");
+        });
+        if (current[0] >= 0) {
+            entireQuery.append(" }");
         }
 
         entireQuery.append("} ");
         log.debug(entireQuery.toString());
         client.sendUpdateQuery(entireQuery.toString(),bindingSet,false,null);
-        lastCacheAccess = new Date();
-        log.debug("success writing cache: {}",String.valueOf(cache.size()));
-        cache.clear();
-
     }
 
 }
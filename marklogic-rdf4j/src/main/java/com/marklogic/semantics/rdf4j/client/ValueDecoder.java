@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the terms of a SPARQL JSON result into values, reusing one IRI
+ * object for every occurrence of the same IRI. Safe to share between
+ * results read on different threads.
+ *
+ */
+final class ValueDecoder {
+
+    static final byte URI = 1;
+    static final byte BNODE = 2;
+    static final byte LITERAL = 3;
+    static final byte LANG_LITERAL = 4;
+    static final byte TYPED_LITERAL = 5;
+
+    static final int MAX_INTERNED = 10000;
+
+    private final ValueFactory valueFactory;
+
+    // emptied when full, so a scan over many distinct IRIs doesn't grow it without bound
+    private final ConcurrentHashMap<String, IRI> iris = new ConcurrentHashMap<>();
+
+    /**
+     * @param valueFactory
+     */
+    ValueDecoder(ValueFactory valueFactory) {
+        this.valueFactory = valueFactory;
+    }
+
+    ValueFactory getValueFactory() {
+        return valueFactory;
+    }
+
+    /**
+     * @param kind - one of URI, BNODE, LITERAL, LANG_LITERAL, TYPED_LITERAL
+     * @param lexical - IRI, blank node id or literal label
+     * @param extra - language or datatype of a literal
+     * @return
+     */
+    Value decode(byte kind, String lexical, String extra) {
+        switch (kind) {
+            case URI:
+                return iri(lexical);
+            case BNODE:
+                return valueFactory.createBNode(lexical);
+            case LANG_LITERAL:
+                return valueFactory.createLiteral(lexical, extra);
+            case TYPED_LITERAL:
+                return valueFactory.createLiteral(lexical, iri(extra));
+            default:
+                return valueFactory.createLiteral(lexical);
+        }
+    }
+
+    private IRI iri(String iri) {
+        IRI value = iris.get(iri);
+        if (value == null) {
+            if (iris.size() >= MAX_INTERNED) {
+                iris.clear();
+            }
+            value = valueFactory.createIRI(iri);
+            iris.put(iri, value);
+        }
+        return value;
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.rdf4j.config;
 
+import com.marklogic.semantics.rdf4j.utils.HttpClientSettings;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
@@ -45,6 +46,24 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
     public static final IRI UPDATE_ENDPOINT = vf.createIRI(
             "http://www.marklogic.com/v1/graphs");
 
+    public static final String HTTP_NAMESPACE = "http://marklogic.com/semantics/rdf4j/http#";
+
+    public static final IRI MAX_CONNECTIONS = vf.createIRI(HTTP_NAMESPACE, "maxConnections");
+
+    public static final IRI MAX_CONNECTIONS_PER_ROUTE = vf.createIRI(HTTP_NAMESPACE, "maxConnectionsPerRoute");
+
+    public static final IRI KEEP_ALIVE_MILLIS = vf.createIRI(HTTP_NAMESPACE, "keepAliveMillis");
+
+    public static final IRI CONNECT_TIMEOUT_MILLIS = vf.createIRI(HTTP_NAMESPACE, "connectTimeoutMillis");
+
+    public static final IRI READ_TIMEOUT_MILLIS = vf.createIRI(HTTP_NAMESPACE, "readTimeoutMillis");
+
+    public static final IRI TCP_NO_DELAY = vf.createIRI(HTTP_NAMESPACE, "tcpNoDelay");
+
+    public static final IRI COMPRESS_REQUESTS = vf.createIRI(HTTP_NAMESPACE, "compressRequests");
+
+    public static final IRI COMPRESS_RESPONSES = vf.createIRI(HTTP_NAMESPACE, "compressResponses");
+
 	private String queryEndpointUrl;
 	private String updateEndpointUrl;
 
@@ -54,6 +73,8 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 	private String password;
 	private String auth;
 
+	private HttpClientSettings httpClientSettings = new HttpClientSettings();
+
     /**
 	 * Base constructor
 	 */
@@ -173,6 +194,18 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 	public void setUpdateEndpointUrl(String url) {
 		this.updateEndpointUrl = url;
 	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP pool, keep-alive,
+	 * timeouts, TCP_NODELAY and compression; settings left at 0 keep the defaults
+	 *
+	 */
+	public HttpClientSettings getHttpClientSettings() {
+		return httpClientSettings;
+	}
+	public void setHttpClientSettings(HttpClientSettings httpClientSettings) {
+		this.httpClientSettings = httpClientSettings != null ? httpClientSettings : new HttpClientSettings();
+	}
 	
 	@Override
 	/**
@@ -201,6 +234,31 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 		if (getUpdateEndpointUrl() != null) {
 			model.add(implNode, UPDATE_ENDPOINT, vf.createIRI(getUpdateEndpointUrl()));
 		}
+		HttpClientSettings http = getHttpClientSettings();
+		if (http.getMaxConnections() > 0) {
+			model.add(implNode, MAX_CONNECTIONS, vf.createLiteral(http.getMaxConnections()));
+		}
+		if (http.getMaxConnectionsPerRoute() > 0) {
+			model.add(implNode, MAX_CONNECTIONS_PER_ROUTE, vf.createLiteral(http.getMaxConnectionsPerRoute()));
+		}
+		if (http.getKeepAliveMillis() > 0) {
+			model.add(implNode, KEEP_ALIVE_MILLIS, vf.createLiteral(http.getKeepAliveMillis()));
+		}
+		if (http.getConnectTimeoutMillis() > 0) {
+			model.add(implNode, CONNECT_TIMEOUT_MILLIS, vf.createLiteral(http.getConnectTimeoutMillis()));
+		}
+		if (http.getReadTimeoutMillis() > 0) {
+			model.add(implNode, READ_TIMEOUT_MILLIS, vf.createLiteral(http.getReadTimeoutMillis()));
+		}
+		if (http.isTcpNoDelay()) {
+			model.add(implNode, TCP_NO_DELAY, vf.createLiteral(true));
+		}
+		if (http.isCompressRequests()) {
+			model.add(implNode, COMPRESS_REQUESTS, vf.createLiteral(true));
+		}
+		if (http.isCompressResponses()) {
+			model.add(implNode, COMPRESS_RESPONSES, vf.createLiteral(true));
+		}
 
 		return implNode;
 	}
@@ -223,7 +281,40 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 			if (iri != null) {
 				setUpdateEndpointUrl(iri.stringValue());
 			}
-		} catch (RDF4JException e) {
+			HttpClientSettings http = getHttpClientSettings();
+			Literal lit = Models.getPropertyLiteral(model, implNode, MAX_CONNECTIONS).orElse(null);
+			if (lit != null) {
+				http.setMaxConnections(lit.intValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, MAX_CONNECTIONS_PER_ROUTE).orElse(null);
+			if (lit != null) {
+				http.setMaxConnectionsPerRoute(lit.intValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, KEEP_ALIVE_MILLIS).orElse(null);
+			if (lit != null) {
+				http.setKeepAliveMillis(lit.longValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, CONNECT_TIMEOUT_MILLIS).orElse(null);
+			if (lit != null) {
+				http.setConnectTimeoutMillis(lit.intValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, READ_TIMEOUT_MILLIS).orElse(null);
+			if (lit != null) {
+				http.setReadTimeoutMillis(lit.intValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, TCP_NO_DELAY).orElse(null);
+			if (lit != null) {
+				http.setTcpNoDelay(lit.booleanValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, COMPRESS_REQUESTS).orElse(null);
+			if (lit != null) {
+				http.setCompressRequests(lit.booleanValue());
+			}
+			lit = Models.getPropertyLiteral(model, implNode, COMPRESS_RESPONSES).orElse(null);
+			if (lit != null) {
+				http.setCompressResponses(lit.booleanValue());
+			}
+		} catch (RDF4JException | IllegalArgumentException e) {
 			throw new RepositoryConfigException(e.getMessage(), e);
 		}
 	}
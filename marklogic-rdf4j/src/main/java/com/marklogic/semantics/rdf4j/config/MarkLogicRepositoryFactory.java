@@ -81,6 +81,7 @@ public class MarkLogicRepositoryFactory implements RepositoryFactory {
         }else{
             throw new RepositoryConfigException("Invalid configuration class: " + config.getClass());
         }
+        repo.setHttpClientSettings(cfg.getHttpClientSettings());
         return repo;
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.query;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.MalformedQueryException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.Modify;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.UpdateExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.ZeroLengthPath;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.parser.ParsedQuery;
+import org.eclipse.rdf4j.query.parser.ParsedUpdate;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Works out from its text which graphs a query or update can touch, so the
+ * write and delete caches only need to be flushed when they hold statements
+ * of one of them.
+ *
+ * In MarkLogic a pattern outside any GRAPH clause ranges over every graph
+ * unless the query has FROM clauses, and a graph variable over every graph
+ * unless it has FROM NAMED clauses; a query with such a pattern is unscoped,
+ * as is one the parser can't read or an update other than DELETE/INSERT.
+ *
+ */
+final class GraphScope {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphScope.class);
+
+    private GraphScope() {
+    }
+
+    /**
+     * @param queryString
+     * @param baseURI
+     * @param bindings - values of graph variables, may be null
+     * @return graphs the query reads, or null if it can read any graph
+     */
+    static Set<Resource> ofQuery(String queryString, String baseURI, BindingSet bindings) {
+        try {
+            ParsedQuery parsed = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, queryString, baseURI);
+            Set<Resource> graphs = new HashSet<>();
+            return collect(parsed.getTupleExpr(), parsed.getDataset(), bindings, graphs) ? graphs : null;
+        } catch (MalformedQueryException e) {
+            logger.debug("could not work out graphs of query: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param updateString
+     * @param baseURI
+     * @param bindings - values of graph variables, may be null
+     * @return graphs the update reads or writes, or null if it can touch any graph
+     */
+    static Set<Resource> ofUpdate(String updateString, String baseURI, BindingSet bindings) {
+        try {
+            ParsedUpdate parsed = QueryParserUtil.parseUpdate(QueryLanguage.SPARQL, updateString, baseURI);
+            Set<Resource> graphs = new HashSet<>();
+            for (UpdateExpr expr : parsed.getUpdateExprs()) {
+                if (!(expr instanceof Modify)) {
+                    return null;
+                }
+                Modify modify = (Modify) expr;
+                Dataset dataset = parsed.getDatasetMapping().get(expr);
+                if (!collect(modify.getDeleteExpr(), dataset, bindings, graphs)
+                        || !collect(modify.getInsertExpr(), dataset, bindings, graphs)
+                        || !collect(modify.getWhereExpr(), dataset, bindings, graphs)) {
+                    return null;
+                }
+            }
+            return graphs;
+        } catch (MalformedQueryException e) {
+            logger.debug("could not work out graphs of update: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds the graphs of every pattern of expr to graphs.
+     *
+     * @return false if a pattern can touch any graph
+     */
+    private static boolean collect(TupleExpr expr, Dataset dataset, BindingSet bindings, Set<Resource> graphs) {
+        if (expr == null) {
+            return true;
+        }
+        boolean[] scoped = { true };
+        expr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+            @Override
+            public void meet(StatementPattern node) {
+                scoped[0] &= addGraphs(node.getScope(), node.getContextVar(), dataset, bindings, graphs);
+            }
+
+            @Override
+            public void meet(ZeroLengthPath node) {
+                scoped[0] &= addGraphs(node.getScope(), node.getContextVar(), dataset, bindings, graphs);
+            }
+        });
+        return scoped[0];
+    }
+
+    private static boolean addGraphs(StatementPattern.Scope scope, Var contextVar, Dataset dataset, BindingSet bindings, Set<Resource> graphs) {
+        Value context = null;
+        if (contextVar != null) {
+            context = contextVar.hasValue() || bindings == null ? contextVar.getValue() : bindings.getValue(contextVar.getName());
+        }
+        if (context instanceof Resource) {
+            graphs.add((Resource) context);
+            return true;
+        }
+        Set<IRI> datasetGraphs = Collections.emptySet();
+        if (dataset != null) {
+            datasetGraphs = new HashSet<>(scope == StatementPattern.Scope.NAMED_CONTEXTS ? dataset.getNamedGraphs() : dataset.getDefaultGraphs());
+            if (scope == StatementPattern.Scope.DEFAULT_CONTEXTS) {
+                // WITH graph of an update
+                datasetGraphs.addAll(dataset.getDefaultRemoveGraphs());
+                if (dataset.getDefaultInsertGraph() != null) {
+                    datasetGraphs.add(dataset.getDefaultInsertGraph());
+                }
+            }
+        }
+        graphs.addAll(datasetGraphs);
+        return !datasetGraphs.isEmpty();
+    }
+
+}
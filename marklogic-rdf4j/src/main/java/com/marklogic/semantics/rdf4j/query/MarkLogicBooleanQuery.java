@@ -65,7 +65,7 @@ public class MarkLogicBooleanQuery extends MarkLogicQuery implements BooleanQuer
     public boolean evaluate() throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendBooleanQuery(getQueryString(), getBindings(), getIncludeInferred(),getBaseURI());
+            return getMarkLogicClient().sendBooleanQuery(getQueryString(), getServerSideBindings(), getIncludeInferred(),getBaseURI(),getRequestOptions());
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
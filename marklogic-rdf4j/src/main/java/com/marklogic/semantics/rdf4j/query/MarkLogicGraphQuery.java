@@ -29,6 +29,7 @@ import org.eclipse.rdf4j.query.GraphQueryResult;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.slf4j.Logger;
@@ -45,6 +46,8 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicGraphQuery.class);
 
+    private RDFFormat resultFormat;
+
     /**
      * constructor
      *
@@ -57,6 +60,27 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
         super(client, bindingSet, baseUri, queryString, graphPerms, queryDef, rulesets);
     }
 
+    /**
+     * sets the format the result is sent in, null for the connection's
+     *
+     * @param resultFormat
+     */
+    public void setResultFormat(RDFFormat resultFormat) {
+        if (resultFormat != null) {
+            MarkLogicClient.checkGraphResultFormat(resultFormat);
+        }
+        this.resultFormat = resultFormat;
+    }
+
+    /**
+     * returns the format the result is sent in, null for the connection's
+     *
+     * @return
+     */
+    public RDFFormat getResultFormat() {
+        return this.resultFormat;
+    }
+
     /**
      * Evaluate graph query. Note: take care to always close the GraphQueryResult after use to free any resources it keeps hold of.
      * It is recommended to use the try-with-resources pattern as GraphQueryResult implements AutoCloseable.
@@ -69,7 +93,7 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
             throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendGraphQuery(getQueryString(),getBindings(),getIncludeInferred(),getBaseURI());
+            return getMarkLogicClient().sendGraphQuery(getQueryString(),getServerSideBindings(),getIncludeInferred(),getBaseURI(),getResultFormat(),getRequestOptions());
         } catch (IOException e) {
             throw new QueryEvaluationException(e);
         } catch (MarkLogicRdf4jException e) {
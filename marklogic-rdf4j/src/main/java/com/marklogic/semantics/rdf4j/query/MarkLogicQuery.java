@@ -25,6 +25,8 @@ import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
+import com.marklogic.semantics.rdf4j.client.RequestOptions;
+import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.Dataset;
@@ -35,6 +37,10 @@ import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Base query class
  *
@@ -54,6 +60,12 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
 
     private boolean includeInferred;
 
+    // options of this query alone, never set on the client other queries share
+    private RequestOptions options = RequestOptions.DEFAULT;
+
+    // graphs set by setGraphScope, null to work them out from the query string
+    private Set<Resource> graphScope;
+
     /**
      * Constructor
      *
@@ -95,14 +107,32 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     }
 
     /**
-     * sets the query string
+     * gets the query string, with bindings inlined unless they are sent as
+     * server side bindings
      *
      * @return
      */
     public String getQueryString() {
+        if (isServerSideBindings()) {
+            return this.queryString;
+        }
         return QueryStringUtil.getQueryString(this.queryString, getBindings());
     }
 
+    /**
+     * gets bindings sent along with the query string, empty when they are
+     * inlined into the query string
+     *
+     * @return
+     */
+    public SPARQLQueryBindingSet getServerSideBindings() {
+        return isServerSideBindings() ? getBindings() : new SPARQLQueryBindingSet();
+    }
+
+    private boolean isServerSideBindings() {
+        return getMarkLogicClient() != null && getMarkLogicClient().canBindServerSide(getBindings());
+    }
+
     /**
      * sets the query string
      *
@@ -252,7 +282,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
-        getMarkLogicClient().setConstrainingQueryDefinition(constrainingQueryDefinition);
+        this.options = this.options.withConstrainingQueryDefinition(constrainingQueryDefinition);
     }
 
     /**
@@ -261,16 +291,17 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public QueryDefinition getConstrainingQueryDefinition() {
-        return getMarkLogicClient().getConstrainingQueryDefinition();
+        return this.options.getConstrainingQueryDefinition();
     }
 
     /**
-     * Sets the inference rulesets to be used by query.
+     * Sets the inference rulesets to be used by query, along with the
+     * default rulesets of the connection.
      *
      * @param ruleset
      */
     public void setRulesets(SPARQLRuleset ... ruleset){
-        getMarkLogicClient().setRulesets(ruleset);
+        this.options = this.options.withRulesets(getMarkLogicClient().withDefaultRulesets(ruleset));
     }
 
     /**
@@ -278,7 +309,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      * @return
      */
     public SPARQLRuleset[] getRulesets(){
-        return getMarkLogicClient().getRulesets();
+        return this.options.getRulesets();
     }
 
     /**
@@ -288,7 +319,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public void setGraphPerms(GraphPermissions graphPerms) {
-        getMarkLogicClient().setGraphPerms(graphPerms);
+        this.options = this.options.withGraphPerms(graphPerms != null ? graphPerms : getMarkLogicClient().emptyGraphPerms());
     }
 
     /**
@@ -297,10 +328,66 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public GraphPermissions getGraphPerms() {
-        return getMarkLogicClient().getGraphPerms();
+        return this.options.getGraphPerms();
+    }
+
+    /**
+     * Snapshot of the options the query is sent with, taking the optimize
+     * level from the connection.
+     *
+     * @return
+     */
+    public RequestOptions getRequestOptions() {
+        return this.options.withOptimizeLevel(getMarkLogicClient().getOptimizeLevel());
     }
 
+    /**
+     * Limits the graphs the write and delete caches are checked against
+     * before the query runs, for queries whose graphs can't be worked out
+     * from the query string; a null graph is the default graph.
+     *
+     * @param graphs
+     */
+    public void setGraphScope(Resource... graphs) {
+        this.graphScope = new HashSet<>(Arrays.asList(graphs));
+    }
+
+    /**
+     * Flushes the write and delete caches before the query reads, unless
+     * reads are eventual.
+     *
+     * @throws MarkLogicRdf4jException
+     */
     protected void sync() throws MarkLogicRdf4jException {
-        getMarkLogicClient().sync();
+        if (!getMarkLogicClient().isEventualReads()) {
+            syncGraphScope();
+        }
+    }
+
+    /**
+     * Flushes the write and delete caches only if they hold statements of
+     * a graph the query can touch.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    protected void syncGraphScope() throws MarkLogicRdf4jException {
+        MarkLogicClient client = getMarkLogicClient();
+        if (!client.isCacheDirty(null)) {
+            return;
+        }
+        Set<Resource> graphs = graphScope != null ? graphScope : parseGraphScope(this.queryString);
+        if (graphs == null || client.isCacheDirty(graphs)) {
+            client.sync();
+        }
+    }
+
+    /**
+     * Works out the graphs a query string can touch.
+     *
+     * @param queryString - query string without bindings inlined
+     * @return graphs, or null if the query can touch any graph
+     */
+    protected Set<Resource> parseGraphScope(String queryString) {
+        return GraphScope.ofQuery(queryString, getBaseURI(), getBindings());
     }
 }
@@ -25,7 +25,9 @@ import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.PagedTupleQueryResult;
 import org.eclipse.rdf4j.query.*;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
@@ -43,6 +45,8 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
     protected final long start = 1;
     protected final long pageLength=-1; // this value is a flag to not set setPageLength()
 
+    private TupleQueryResultFormat resultFormat;
+
     /**
      * Constructor
      *
@@ -55,6 +59,27 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
         super(client, bindingSet, baseUri, queryString, graphPerms, queryDef, rulesets);
     }
 
+    /**
+     * sets the format the result is sent in, null for the connection's
+     *
+     * @param resultFormat
+     */
+    public void setResultFormat(TupleQueryResultFormat resultFormat) {
+        if (resultFormat != null) {
+            MarkLogicClient.checkTupleResultFormat(resultFormat);
+        }
+        this.resultFormat = resultFormat;
+    }
+
+    /**
+     * returns the format the result is sent in, null for the connection's
+     *
+     * @return
+     */
+    public TupleQueryResultFormat getResultFormat() {
+        return this.resultFormat;
+    }
+
     /**
      * Evaluate tuple query. Note: take care to always close the TupleQueryResult after use to free any resources it keeps hold of.
      * It is recommended to use the try-with-resources pattern as TupleQueryResult implements AutoCloseable.
@@ -80,7 +105,31 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
             throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendTupleQuery(getQueryString(), getBindings(), start, pageLength, getIncludeInferred(), getBaseURI());
+            return getMarkLogicClient().sendTupleQuery(getQueryString(), getServerSideBindings(), start, pageLength, getIncludeInferred(), getBaseURI(), getResultFormat(), getRequestOptions());
+        }catch (RepositoryException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }catch (MalformedQueryException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }catch(FailedRequestException e){
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Evaluate tuple query as a cursor fetching pageLength rows per request, the next
+     * pages fetched in the background while the current one is read. Note: take care
+     * to always close the TupleQueryResult after use to stop any page still being fetched.
+     *
+     * @param pageLength - rows per request
+     * @param maxPages - pages held in memory, including the one being read
+     * @return TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    public TupleQueryResult evaluatePaged(long pageLength, int maxPages)
+            throws QueryEvaluationException {
+        try {
+            sync();
+            return getMarkLogicClient().sendPagedTupleQuery(getQueryString(), getServerSideBindings(), pageLength, maxPages, getIncludeInferred(), getBaseURI(), getResultFormat(), getRequestOptions());
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
@@ -90,6 +139,18 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
         }
     }
 
+    /**
+     * Evaluate tuple query as a cursor fetching pageLength rows per request,
+     * prefetching one page ahead.
+     *
+     * @param pageLength - rows per request
+     * @return TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    public TupleQueryResult evaluatePaged(long pageLength) throws QueryEvaluationException {
+        return evaluatePaged(pageLength, PagedTupleQueryResult.DEFAULT_MAX_PAGES);
+    }
+
     /**
      * Evaluate tuple query with TupleQueryResulthandler.
      *
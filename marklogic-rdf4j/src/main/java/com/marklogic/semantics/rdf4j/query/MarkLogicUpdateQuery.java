@@ -24,7 +24,9 @@ import com.marklogic.client.ForbiddenUserException;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.Update;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
@@ -34,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * Update query
@@ -65,7 +68,7 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
     public void execute() throws UpdateExecutionException {
         try {
             sync();
-            getMarkLogicClient().sendUpdateQuery(getQueryString(), getBindings(), getIncludeInferred(), getBaseURI());
+            getMarkLogicClient().sendUpdateQuery(getQueryString(), getServerSideBindings(), getIncludeInferred(), getBaseURI(), getRequestOptions());
         }catch(ForbiddenUserException | FailedRequestException e){
             throw new UpdateExecutionException(e);
         } catch (RepositoryException e) {
@@ -77,4 +80,20 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
         }
     }
 
+    /**
+     * Flushes the write and delete caches if they hold statements of a graph
+     * the update touches, eventual reads or not.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    @Override
+    protected void sync() throws MarkLogicRdf4jException {
+        syncGraphScope();
+    }
+
+    @Override
+    protected Set<Resource> parseGraphScope(String queryString) {
+        return GraphScope.ofUpdate(queryString, getBaseURI(), getBindings());
+    }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.utils;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+/**
+ * Gzips the bodies of graph writes and SPARQL updates, and asks for
+ * gzip or deflate responses, inflating them as they are read. Nothing
+ * is held in memory whole either way.
+ *
+ */
+final class CompressionInterceptor implements Interceptor {
+
+    private static final String SPARQL_UPDATE = "application/sparql-update";
+
+    private final boolean compressRequests;
+    private final boolean compressResponses;
+
+    /**
+     * @param compressRequests - gzip the bodies of writes
+     * @param compressResponses - accept gzip and deflate responses
+     */
+    CompressionInterceptor(boolean compressRequests, boolean compressResponses) {
+        this.compressRequests = compressRequests;
+        this.compressResponses = compressResponses;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (compressRequests && isWrite(request)) {
+            request = request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(request.method(), gzip(request.body()))
+                    .build();
+        }
+        // a caller asking for an encoding of its own decodes the response itself
+        if (!compressResponses || request.header("Accept-Encoding") != null) {
+            return chain.proceed(request);
+        }
+        // setting the header turns off OkHttp's own gzip handling, so responses are inflated here
+        return inflate(chain.proceed(request.newBuilder().header("Accept-Encoding", "gzip, deflate").build()));
+    }
+
+    /**
+     * Checks for a body merged or put into graphs, or a SPARQL update.
+     */
+    private static boolean isWrite(Request request) {
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null) {
+            return false;
+        }
+        String path = request.url().encodedPath();
+        if (path.endsWith("/v1/graphs")) {
+            return true;
+        }
+        MediaType type = body.contentType();
+        return path.endsWith("/v1/graphs/sparql") && type != null
+                && SPARQL_UPDATE.equalsIgnoreCase(type.type() + "/" + type.subtype());
+    }
+
+    private static RequestBody gzip(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                // unknown until written, so the body is sent chunked
+                return -1;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
+
+    private static Response inflate(Response response) {
+        String encoding = response.header("Content-Encoding");
+        ResponseBody body = response.body();
+        if (encoding == null || body == null) {
+            return response;
+        }
+        Source source;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            source = new GzipSource(body.source());
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            // HTTP deflate is zlib wrapped, which Inflater expects by default
+            source = new InflaterSource(body.source(), new Inflater());
+        } else {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(ResponseBody.create(body.contentType(), -1L, Okio.buffer(source)))
+                .build();
+    }
+
+}
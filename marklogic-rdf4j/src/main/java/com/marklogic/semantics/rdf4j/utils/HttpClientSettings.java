@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.utils;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP settings of the DatabaseClient a repository sends its requests
+ * through: connection pool size, keep-alive, timeouts, TCP_NODELAY and
+ * compression. Settings left at 0 (or false) keep the Java Client API
+ * default.
+ *
+ */
+public class HttpClientSettings {
+
+    // OkHttp's defaults, used for the half of the pool that isn't set
+    private static final int DEFAULT_IDLE_CONNECTIONS = 5;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private int maxConnections;
+    private int maxConnectionsPerRoute;
+    private long keepAliveMillis;
+    private int connectTimeoutMillis;
+    private int readTimeoutMillis;
+    private boolean tcpNoDelay;
+    private boolean compressRequests;
+    private boolean compressResponses;
+
+    /**
+     * getter for the most connections kept open, 0 for the default
+     *
+     * @return
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the most connections kept open for reuse and the most
+     * asynchronous requests in flight.
+     *
+     * @param maxConnections - 0 for the default
+     */
+    public void setMaxConnections(int maxConnections) {
+        checkNotNegative("maxConnections", maxConnections);
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * getter for the most connections to one host, 0 for the default
+     *
+     * @return
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the most connections to one host. A DatabaseClient talks to
+     * one host, so the smaller of this and maxConnections bounds the pool.
+     *
+     * @param maxConnectionsPerRoute - 0 for the default
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        checkNotNegative("maxConnectionsPerRoute", maxConnectionsPerRoute);
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * getter for how long an idle connection is kept, 0 for the default
+     *
+     * @return
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * @param keepAliveMillis - how long an idle connection is kept open, 0 for the default
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        checkNotNegative("keepAliveMillis", keepAliveMillis);
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * getter for connect timeout, 0 for the default
+     *
+     * @return
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * @param connectTimeoutMillis - 0 for the default
+     */
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        checkNotNegative("connectTimeoutMillis", connectTimeoutMillis);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * getter for read timeout, 0 for the default
+     *
+     * @return
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @param readTimeoutMillis - longest wait for the next bytes of a response, 0 for the default
+     */
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        checkNotNegative("readTimeoutMillis", readTimeoutMillis);
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * getter for TCP_NODELAY
+     *
+     * @return
+     */
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * @param tcpNoDelay - true to send small requests without waiting to fill a packet
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * getter for gzipping the bodies of writes
+     *
+     * @return
+     */
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    /**
+     * @param compressRequests - true to gzip the bodies of graph writes and
+     *                         SPARQL updates, including those of the write cache
+     */
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    /**
+     * getter for asking for compressed responses
+     *
+     * @return
+     */
+    public boolean isCompressResponses() {
+        return compressResponses;
+    }
+
+    /**
+     * @param compressResponses - true to ask for gzip or deflate query results
+     *                          and graphs, inflated as they are parsed
+     */
+    public void setCompressResponses(boolean compressResponses) {
+        this.compressResponses = compressResponses;
+    }
+
+    /**
+     * Applies the settings to the builder of a DatabaseClient's HTTP client.
+     *
+     * @param builder
+     */
+    public void configure(OkHttpClient.Builder builder) {
+        int poolSize = maxConnections;
+        if (maxConnectionsPerRoute > 0 && (poolSize == 0 || maxConnectionsPerRoute < poolSize)) {
+            poolSize = maxConnectionsPerRoute;
+        }
+        if (poolSize > 0 || keepAliveMillis > 0) {
+            builder.connectionPool(new ConnectionPool(
+                    poolSize > 0 ? poolSize : DEFAULT_IDLE_CONNECTIONS,
+                    keepAliveMillis > 0 ? keepAliveMillis : DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        if (maxConnections > 0 || maxConnectionsPerRoute > 0) {
+            Dispatcher dispatcher = new Dispatcher();
+            if (maxConnections > 0) {
+                dispatcher.setMaxRequests(maxConnections);
+            }
+            if (maxConnectionsPerRoute > 0) {
+                dispatcher.setMaxRequestsPerHost(maxConnectionsPerRoute);
+            }
+            builder.dispatcher(dispatcher);
+        }
+        if (connectTimeoutMillis > 0) {
+            builder.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (readTimeoutMillis > 0) {
+            builder.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (tcpNoDelay) {
+            builder.socketFactory(new NoDelaySocketFactory(SocketFactory.getDefault()));
+        }
+        if (compressRequests || compressResponses) {
+            builder.addInterceptor(new CompressionInterceptor(compressRequests, compressResponses));
+        }
+    }
+
+    private static void checkNotNegative(String name, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative.");
+        }
+    }
+
+    /**
+     * Socket factory turning on TCP_NODELAY; TLS sockets are layered on
+     * the sockets it makes, so they have it too.
+     */
+    private static final class NoDelaySocketFactory extends SocketFactory {
+
+        private final SocketFactory delegate;
+
+        NoDelaySocketFactory(SocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return noDelay(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return noDelay(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return noDelay(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return noDelay(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return noDelay(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private static Socket noDelay(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+    }
+
+}
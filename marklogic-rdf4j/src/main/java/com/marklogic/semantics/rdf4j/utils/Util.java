@@ -17,6 +17,7 @@ package com.marklogic.semantics.rdf4j.utils;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.extra.okhttpclient.OkHttpClientConfigurator;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFFormat;
@@ -24,6 +25,20 @@ import org.eclipse.rdf4j.rio.RDFFormat;
 
 public class Util {
     private static Util util = null;
+
+    // configurators apply to every client made after they're added, so one is
+    // added for good and applies the settings of the client being made on this thread
+    private static final ThreadLocal<HttpClientSettings> httpSettings = new ThreadLocal<>();
+
+    static {
+        DatabaseClientFactory.addConfigurator((OkHttpClientConfigurator) builder -> {
+            HttpClientSettings settings = httpSettings.get();
+            if (settings != null) {
+                settings.configure(builder);
+            }
+        });
+    }
+
     private Util(){
 
     }
@@ -109,6 +124,35 @@ public class Util {
         return DatabaseClientFactory.newClient(host, port, database, securityContext);
     }
 
+    /**
+     * Public utility that returns DatabaseClient with HTTP settings
+     * @param settings - null for the defaults
+     * @return DatabaseClient
+     */
+    public DatabaseClient getClientBasedOnAuth(String host, int port, String database, DatabaseClientFactory.SecurityContext securityContext, HttpClientSettings settings)
+    {
+        httpSettings.set(settings);
+        try {
+            return getClientBasedOnAuth(host, port, database, securityContext);
+        } finally {
+            httpSettings.remove();
+        }
+    }
+
+    /**
+     * Public utility that returns DatabaseClient based on auth, with HTTP settings
+     * @param settings - null for the defaults
+     * @return DatabaseClient
+     */
+    public DatabaseClient getClientBasedOnAuth(String host, int port, String user, String password, String database, String auth, HttpClientSettings settings) {
+        httpSettings.set(settings);
+        try {
+            return getClientBasedOnAuth(host, port, user, password, database, auth);
+        } finally {
+            httpSettings.remove();
+        }
+    }
+
     /**
      * Public utility that returns DatabaseClient based on auth
      * @return DatabaseClient
@@ -19,7 +19,10 @@
  */
 package com.marklogic.semantics.rdf4j;
 
+import com.marklogic.semantics.rdf4j.client.JmxMetricsRecorder;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
@@ -31,10 +34,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
 
 import static org.junit.Assert.assertEquals;
 
@@ -168,6 +182,298 @@ public class MarkLogicRepositoryCacheTest extends Rdf4jTestBase {
 //        assertEquals(0L, conn.size());
     }
 
+    @Test
+    public void testStatementWithWriteCacheQuadsMode() throws Exception {
+        Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
+        ValueFactory f= conn.getValueFactory();
+
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+
+        conn.setWriteCacheQuadsMode(true);
+        conn.begin();
+        for (int i=0 ; i<2000 ; i++){
+            Literal obj = f.createLiteral("Alice" + i);
+            if ( (i & 1) == 0 ) {
+                conn.add(alice, name, obj, context1);
+            }else{
+                conn.add(alice, name, obj);
+            }
+        }
+        conn.add(alice, name, f.createLiteral("Alice \"quoted\"\n", "en"), context1);
+        conn.commit();
+
+        assertEquals("Incorrect number of triples.", 2001, conn.size());
+        assertEquals("Incorrect number of triples.", 1001, conn.size(context1));
+        Assert.assertTrue(conn.hasStatement(alice, name, f.createLiteral("Alice \"quoted\"\n", "en"), false, context1));
+        conn.setWriteCacheQuadsMode(false);
+        conn.clear();
+    }
+
+    @Test
+    public void testConcurrentAddWithWriteCache() throws Exception {
+        final ValueFactory f= conn.getValueFactory();
+        final IRI graph = f.createIRI("http://marklogic.com/test/concurrent");
+        final IRI name = f.createIRI("http://example.org/ontology/name");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(10);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 10; t++) {
+            final int thread = t;
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    conn.add(f.createIRI("http://example.org/people/" + thread), name, f.createLiteral("Alice" + i), graph);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        conn.sync();
+
+        assertEquals("Incorrect number of triples.", 10000, conn.size(graph));
+        conn.clear(graph);
+    }
+
+    @Test
+    public void testFlushPipeline() throws Exception {
+        ValueFactory f= conn.getValueFactory();
+        IRI graph = f.createIRI("http://marklogic.com/test/pipeline");
+        conn.configureFlushPipeline(4, 8, false);
+        conn.configureWriteCache(100, 500, 500);
+        for (int term = 0; term < 20000; term++) {
+            conn.add(f.createIRI("urn:subject:" + term), f.createIRI("urn:predicate:" + term), f.createIRI("urn:object:" + term), graph);
+        }
+        conn.sync();
+        assertEquals(20000L, conn.size(graph));
+        conn.clear(graph);
+        conn.configureFlushPipeline(1, 0, false);
+    }
+
+    @Test
+    public void testWriteCacheByteBudget() throws Exception {
+        ValueFactory f= conn.getValueFactory();
+        IRI graph = f.createIRI("http://marklogic.com/test/bytes");
+        IRI text = f.createIRI("http://example.org/ontology/text");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            sb.append((char) ('a' + (i % 26)));
+        }
+        // budget holds ~16 statements, well below the triple count limit
+        conn.configureWriteCache(100, 500, 750, 64 * 1024);
+        for (int term = 0; term < 500; term++) {
+            conn.add(f.createIRI("urn:subject:" + term), text, f.createLiteral(sb.toString()), graph);
+        }
+        conn.sync();
+        assertEquals(500L, conn.size(graph));
+        conn.clear(graph);
+    }
+
+    @Test
+    public void testRemoveThenAddFromStream() throws Exception {
+        IRI context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Literal alicesName = f.createLiteral("Alice");
+        conn.add(alice, name, alicesName, context1);
+        conn.sync();
+
+        // the buffered remove must reach the server before the loaded triple
+        conn.remove(alice, name, alicesName, context1);
+        String ntriples = "<http://example.org/people/alice> <http://example.org/ontology/name> \"Alice\" .\n";
+        conn.add(new ByteArrayInputStream(ntriples.getBytes(StandardCharsets.UTF_8)), null, RDFFormat.NTRIPLES, context1);
+        conn.sync();
+        Assert.assertTrue(conn.hasStatement(alice, name, alicesName, false, context1));
+
+        conn.remove(alice, name, alicesName, context1);
+        conn.add(new StringReader(ntriples), null, RDFFormat.NTRIPLES, context1);
+        conn.sync();
+        Assert.assertTrue(conn.hasStatement(alice, name, alicesName, false, context1));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testAddRemoveCoalescingWithDeleteCache() throws Exception {
+        ValueFactory f= conn.getValueFactory();
+        IRI context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI context2 = f.createIRI("http://marklogic.com/test/context2");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Literal alicesName = f.createLiteral("Alice");
+        Literal bobsName = f.createLiteral("Bob", "en");
+
+        // pre-existing triple must still be removed by remove after add
+        conn.add(alice, name, alicesName, context1);
+        conn.sync();
+
+        conn.add(alice, name, alicesName, context1);
+        conn.remove(alice, name, alicesName, context1);
+        conn.sync();
+        Assert.assertFalse(conn.hasStatement(alice, name, alicesName, false, context1));
+
+        // remove then add leaves the triple in place
+        conn.remove(alice, name, bobsName, context2);
+        conn.add(alice, name, bobsName, context2);
+        conn.sync();
+        Assert.assertTrue(conn.hasStatement(alice, name, bobsName, false, context2));
+
+        // remove from every graph, then add back into one graph
+        conn.add(alice, name, alicesName, context1);
+        conn.add(alice, name, alicesName, context2);
+        conn.remove(alice, name, alicesName);
+        conn.add(alice, name, alicesName, context2);
+        conn.sync();
+        Assert.assertFalse(conn.hasStatement(alice, name, alicesName, false, context1));
+        Assert.assertTrue(conn.hasStatement(alice, name, alicesName, false, context2));
+
+        // churn
+        for (int i = 0; i < 2000; i++) {
+            Literal obj = f.createLiteral("Alice" + i);
+            conn.add(alice, name, obj, context1);
+            if ((i % 4) != 0) {
+                conn.remove(alice, name, obj, context1);
+            }
+        }
+        conn.sync();
+        assertEquals(500L, conn.size(context1));
+        conn.clear(context1, context2);
+    }
+
+    @Test
+    public void testWriteCacheWithDocumentIngestion() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        conn.configureDocumentIngestion(10, 2);
+        conn.setDocumentIngestion(true);
+        for (int i = 0; i < 1000; i++) {
+            IRI person = f.createIRI("http://example.org/people/" + i);
+            conn.add(person, name, f.createLiteral("person <" + i + "> & co", "en"), context1);
+        }
+        conn.add(f.createIRI("http://example.org/people/default"), name, f.createLiteral(42));
+        Literal lines = f.createLiteral("line 1\r\nline 2\rline 3\n\tend");
+        conn.add(f.createIRI("http://example.org/people/lines"), name, lines, context1);
+        conn.sync();
+        assertEquals(1001L, conn.size(context1));
+        Assert.assertTrue(conn.hasStatement(f.createIRI("http://example.org/people/7"), name, f.createLiteral("person <7> & co", "en"), false, context1));
+        Assert.assertTrue(conn.hasStatement(f.createIRI("http://example.org/people/lines"), name, lines, false, context1));
+        Assert.assertTrue(conn.hasStatement(f.createIRI("http://example.org/people/default"), name, f.createLiteral(42), false));
+        conn.setDocumentIngestion(false);
+        conn.clear(context1);
+        conn.clear((Resource) null);
+    }
+
+    @Test
+    public void testWriteCacheWithoutDeduplicate() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        conn.setWriteCacheDeduplicate(false);
+        conn.setWriteCacheQuadsMode(true);
+        for (int i = 0; i < 3000; i++) {
+            IRI person = f.createIRI("http://example.org/people/" + (i % 1000));
+            conn.add(person, name, f.createLiteral("person " + (i % 1000)), context1);
+        }
+        conn.remove(f.createIRI("http://example.org/people/0"), name, f.createLiteral("person 0"), context1);
+        conn.sync();
+        Assert.assertTrue(conn.hasStatement(f.createIRI("http://example.org/people/999"), name, f.createLiteral("person 999"), false, context1));
+        Assert.assertFalse(conn.hasStatement(f.createIRI("http://example.org/people/0"), name, f.createLiteral("person 0"), false, context1));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testQueriesOnlyFlushDirtyGraphs() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        Resource context2 = f.createIRI("http://marklogic.com/test/context2");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Literal aliceName = f.createLiteral("Alice");
+        conn.configureWriteCache(0, 60000, 1000);
+        conn.add(alice, name, aliceName, context1);
+
+        // neither query can see context1, so the cached add stays cached
+        Assert.assertFalse(conn.hasStatement(alice, name, aliceName, false, context2));
+        TupleQuery query = conn.prepareTupleQuery("SELECT ?s FROM <http://marklogic.com/test/context2> WHERE { ?s ?p ?o }");
+        try (TupleQueryResult result = query.evaluate()) {
+            Assert.assertFalse(result.hasNext());
+        }
+        conn.setEventualReads(true);
+        Assert.assertFalse(conn.hasStatement(alice, name, aliceName, false, context1));
+
+        conn.setEventualReads(false);
+        Assert.assertTrue(conn.hasStatement(alice, name, aliceName, false, context1));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        JmxMetricsRecorder metrics = new JmxMetricsRecorder("MarkLogicRepositoryCacheTest");
+        try {
+            conn.setMetricsRecorder(metrics);
+            for (int i = 0; i < 100; i++) {
+                conn.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i), context1);
+            }
+            conn.sync();
+            TupleQuery query = conn.prepareTupleQuery("SELECT ?s FROM <http://marklogic.com/test/context1> WHERE { ?s ?p ?o }");
+            int rows = 0;
+            try (TupleQueryResult result = query.evaluate()) {
+                while (result.hasNext()) {
+                    result.next();
+                    rows++;
+                }
+            }
+            Assert.assertEquals(100, rows);
+
+            Assert.assertEquals(100, metrics.getDistribution("writecache.batch.triples").getTotal());
+            Assert.assertTrue(metrics.getDistribution("writecache.batch.bytes").getTotal() > 0);
+            Assert.assertTrue(metrics.getDistribution("writecache.flush.latency").getCount() > 0);
+            Assert.assertEquals(0, metrics.getCounter("writecache.flush.errors").getCount());
+            Assert.assertEquals(1, metrics.getDistribution("select.latency").getCount());
+            Assert.assertTrue(metrics.getDistribution("select.bytes").getTotal() > 0);
+            Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+                    "com.marklogic.semantics.rdf4j:type=Metrics,scope=\"MarkLogicRepositoryCacheTest\",name=\"select.latency\"")));
+        } finally {
+            metrics.close();
+            conn.clear(context1);
+        }
+    }
+
+    @Test
+    public void testWriteCacheFlushesOnSharedScheduler() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Literal alicesName = f.createLiteral("Alice");
+
+        List<MarkLogicRepositoryConnection> conns = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MarkLogicRepositoryConnection c = rep.getConnection();
+            c.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i), context1);
+            conns.add(c);
+        }
+        int schedulers = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("marklogic-rdf4j-cache-scheduler")) {
+                schedulers++;
+            }
+        }
+        assertEquals(1, schedulers);
+
+        // not synced, only the aged flush can write it
+        conn.configureWriteCache(0, 100, 750);
+        conn.add(alice, name, alicesName, context1);
+        Thread.sleep(1000);
+        MarkLogicRepositoryConnection other = conns.get(0);
+        Assert.assertTrue(other.hasStatement(alice, name, alicesName, false, context1));
+
+        for (MarkLogicRepositoryConnection c : conns) {
+            c.close();
+        }
+        conn.clear(context1);
+    }
+
     @Test
     @Ignore
     // This test is very long-running, ignore in general test runs.
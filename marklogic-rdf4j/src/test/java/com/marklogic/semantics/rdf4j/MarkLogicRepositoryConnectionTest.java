@@ -22,6 +22,11 @@ package com.marklogic.semantics.rdf4j;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.client.BulkLoadListener;
+import com.marklogic.semantics.rdf4j.client.QueryResultCache;
+import com.marklogic.semantics.rdf4j.client.RequestEvent;
+import com.marklogic.semantics.rdf4j.client.RequestListener;
+import com.marklogic.semantics.rdf4j.client.ResultParserExecutor;
 import com.marklogic.semantics.rdf4j.config.MarkLogicRepositoryConfig;
 import com.marklogic.semantics.rdf4j.config.MarkLogicRepositoryFactory;
 
@@ -55,8 +60,12 @@ import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -220,6 +229,303 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         conn.clear(context1, context2);
     }
 
+    @Test
+    public void testBulkLoad() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        List<Long> chunks = new ArrayList<>();
+        BulkLoadListener listener = new BulkLoadListener() {
+            @Override
+            public void chunkLoaded(int chunk, long statements, long loadedStatements) {
+                synchronized (chunks) {
+                    chunks.add(statements);
+                }
+            }
+        };
+        conn.configureBulkLoad(1, 2);
+
+        File turtle = new File("src/test/resources/testdata/default-graph-1.ttl");
+        Assert.assertEquals(4L, conn.bulkLoad(turtle, "http://example.org/example1/", RDFFormat.TURTLE, listener, context1));
+        Assert.assertEquals(4, chunks.size());
+        Assert.assertEquals(4L, conn.size(context1));
+
+        // a buffered remove must not delete the same triple loaded after it
+        IRI graph1 = f.createIRI("urn:x-local:graph1");
+        IRI publisher = f.createIRI("http://purl.org/dc/elements/1.1/publisher");
+        conn.remove(graph1, publisher, f.createLiteral("Bob"), context1);
+        conn.bulkLoad(turtle, "http://example.org/example1/", RDFFormat.TURTLE, null, context1);
+        conn.sync();
+        Assert.assertTrue(conn.hasStatement(graph1, publisher, f.createLiteral("Bob"), false, context1));
+
+        File nquads = new File("src/test/resources/testdata/nquads1.nq");
+        Assert.assertEquals(3L, conn.bulkLoad(nquads, null, RDFFormat.NQUADS, null));
+        Assert.assertEquals(1L, conn.size(f.createIRI("http://example.org/graph1")));
+
+        // every chunk of split lines goes to each context
+        Resource context2 = f.createIRI("http://marklogic.com/test/context2");
+        File ntriples = File.createTempFile("bulkload", ".nt");
+        ntriples.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(ntriples))) {
+            for (int i = 0; i < 3; i++) {
+                writer.write("<http://example.org/people/" + i + "> <http://example.org/ontology/name> \"person " + i + "\" .\n");
+            }
+        }
+        conn.clear(context1);
+        Assert.assertEquals(3L, conn.bulkLoad(ntriples, null, RDFFormat.NTRIPLES, null, context1, context2));
+        Assert.assertEquals(3L, conn.size(context1));
+        Assert.assertEquals(3L, conn.size(context2));
+
+        conn.clear(context1, context2, f.createIRI("http://example.org/graph1"), f.createIRI("http://example.org/graph2"), f.createIRI("http://example.org/graph3"));
+    }
+
+    @Test
+    public void testExportGraphs() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        Resource context2 = f.createIRI("http://marklogic.com/test/context2");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.add(alice, name, f.createLiteral("Al"), context2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conn.exportGraphs(out, RDFFormat.NQUADS, context1, context2);
+        Model quads = Rio.parse(new ByteArrayInputStream(out.toByteArray()), "", RDFFormat.NQUADS);
+        Assert.assertEquals(2, quads.size());
+        Assert.assertTrue(quads.contains(alice, name, f.createLiteral("Alice"), context1));
+        Assert.assertTrue(quads.contains(alice, name, f.createLiteral("Al"), context2));
+
+        Map<Resource, ByteArrayOutputStream> outs = new ConcurrentHashMap<>();
+        conn.exportGraphs(context -> outs.computeIfAbsent(context, c -> new ByteArrayOutputStream()), RDFFormat.TURTLE, 2, context1, context2);
+        Model graph2 = Rio.parse(new ByteArrayInputStream(outs.get(context2).toByteArray()), "", RDFFormat.TURTLE);
+        Assert.assertEquals(1, graph2.size());
+        Assert.assertTrue(graph2.contains(alice, name, f.createLiteral("Al")));
+        conn.clear(context1, context2);
+    }
+
+    @Test
+    public void testHasStatements() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        Resource context2 = f.createIRI("http://marklogic.com/test/context2");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        List<Statement> candidates = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            IRI person = f.createIRI("http://example.org/people/" + i);
+            if (i % 2 == 0) {
+                conn.add(person, name, f.createLiteral("person " + i), context1);
+            }
+            candidates.add(f.createStatement(person, name, f.createLiteral("person " + i)));
+        }
+        conn.sync();
+
+        BitSet found = conn.hasStatements(candidates, false);
+        Assert.assertEquals(600, found.cardinality());
+        Assert.assertTrue(found.get(0));
+        Assert.assertFalse(found.get(1));
+        Assert.assertTrue(found.get(1198));
+
+        Assert.assertEquals(600, conn.hasStatements(candidates, false, context1).cardinality());
+        Assert.assertTrue(conn.hasStatements(candidates, false, context2).isEmpty());
+
+        List<Statement> quads = new ArrayList<>();
+        quads.add(f.createStatement(f.createIRI("http://example.org/people/2"), name, f.createLiteral("person 2"), context1));
+        quads.add(f.createStatement(f.createIRI("http://example.org/people/2"), name, f.createLiteral("person 2"), context2));
+        found = conn.hasStatements(quads, false);
+        Assert.assertTrue(found.get(0));
+        Assert.assertFalse(found.get(1));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testQueryResultCache() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.configureQueryResultCache(10, 60000, 100);
+
+        String query = "SELECT ?o WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } }";
+        for (int i = 0; i < 2; i++) {
+            try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+                Assert.assertEquals("Alice", result.next().getValue("o").stringValue());
+                Assert.assertFalse(result.hasNext());
+            }
+        }
+        QueryResultCache cache = conn.getQueryResultCache();
+        Assert.assertEquals(1L, cache.getMissCount());
+        Assert.assertEquals(1L, cache.getHitCount());
+
+        // a write drops cached results
+        conn.add(alice, name, f.createLiteral("Al"), context1);
+        try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+            Assert.assertEquals(2, QueryResults.asList(result).size());
+        }
+        Assert.assertEquals(2L, cache.getMissCount());
+        Assert.assertEquals(1L, cache.getInvalidationCount());
+
+        conn.setQueryResultCacheEnabled(false);
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testQueryResultCacheIsShared() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.configureQueryResultCache(10, 60000, 100);
+        MarkLogicRepositoryConnection other = rep.getConnection();
+        try {
+            Assert.assertSame(conn.getQueryResultCache(), other.getQueryResultCache());
+
+            String query = "SELECT ?o WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } }";
+            try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+                Assert.assertEquals(1, QueryResults.asList(result).size());
+            }
+            // a write through another connection drops the result cached by this one
+            other.add(alice, name, f.createLiteral("Al"), context1);
+            other.sync();
+            try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+                Assert.assertEquals(2, QueryResults.asList(result).size());
+            }
+            Assert.assertEquals(0L, conn.getQueryResultCache().getHitCount());
+        } finally {
+            other.close();
+        }
+        conn.setQueryResultCacheEnabled(false);
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testResultParsing() throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        for (int i = 0; i < 5; i++) {
+            conn.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i), context1);
+        }
+        ResultParserExecutor executor = new ResultParserExecutor(1);
+        conn.setParserExecutor(executor);
+        conn.configureResultParsing(1, false);
+
+        String query = "SELECT ?s ?o WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } }";
+        try (TupleQueryResult unread = conn.prepareTupleQuery(query).evaluate()) {
+            // the only parser thread is taken, so this one is parsed on the caller thread
+            try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+                Assert.assertEquals(5, QueryResults.asList(result).size());
+            }
+            Assert.assertEquals(5, QueryResults.asList(unread).size());
+        }
+
+        conn.configureResultParsing(ResultParserExecutor.DEFAULT_QUEUE_DEPTH, true);
+        try (GraphQueryResult result = conn.prepareGraphQuery("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } }").evaluate()) {
+            Assert.assertEquals(5, QueryResults.asModel(result).size());
+        }
+
+        conn.setParserExecutor(ResultParserExecutor.getShared());
+        conn.configureResultParsing(ResultParserExecutor.DEFAULT_QUEUE_DEPTH, false);
+        executor.shutdown();
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testConnectionsAreIndependent() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        MarkLogicRepositoryConnection other = rep.getConnection();
+        try {
+            conn.begin();
+            conn.add(f.createIRI("http://example.org/people/0"), name, f.createLiteral("person 0"), context1);
+            conn.sync();
+            // the transaction belongs to conn alone
+            Assert.assertFalse(other.isActive());
+            Assert.assertEquals(0, other.size(context1));
+            Assert.assertEquals(1, conn.size(context1));
+
+            String query = "SELECT ?s WHERE { ?s ?p ?o }";
+            MarkLogicQuery inferring = (MarkLogicQuery) conn.prepareTupleQuery(query);
+            inferring.setRulesets(SPARQLRuleset.RDFS_FULL);
+            other.setDefaultRulesets(SPARQLRuleset.EQUIVALENT_CLASS);
+            MarkLogicQuery plain = (MarkLogicQuery) conn.prepareTupleQuery(query);
+            // preparing a query or changing another connection doesn't change an earlier query
+            Assert.assertArrayEquals(new SPARQLRuleset[] { SPARQLRuleset.RDFS_FULL }, inferring.getRulesets());
+            Assert.assertNull(plain.getRulesets());
+            Assert.assertNull(conn.getDefaultRulesets());
+
+            conn.commit();
+            Assert.assertEquals(1, other.size(context1));
+        } finally {
+            other.close();
+        }
+        // closing one connection leaves the shared pool open for the others
+        Assert.assertEquals(1, conn.size(context1));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testRequestListener() throws Exception {
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        List<RequestEvent> events = Collections.synchronizedList(new ArrayList<>());
+        RequestListener listener = new RequestListener() {
+            @Override
+            public void requestStarted(RequestEvent event) {
+                event.setAttribute("traceId", "trace-1");
+            }
+
+            @Override
+            public void requestFinished(RequestEvent event) {
+                events.add(event);
+            }
+        };
+        conn.addRequestListener(listener);
+        conn.begin();
+        conn.add(f.createIRI("http://example.org/people/0"), name, f.createLiteral("person 0"), context1);
+        conn.commit();
+        // sent as is with its binding, rather than inlined into the query text
+        conn.setServerSideBindings(true);
+        String query = "SELECT ?s WHERE { ?s ?p ?o }";
+        TupleQuery tupleQuery = conn.prepareTupleQuery(query);
+        tupleQuery.setBinding("p", name);
+        try (TupleQueryResult result = tupleQuery.evaluate()) {
+            Assert.assertTrue(result.hasNext());
+        }
+        conn.setServerSideBindings(false);
+
+        List<RequestEvent.Operation> operations = new ArrayList<>();
+        for (RequestEvent event : events) {
+            operations.add(event.getOperation());
+            Assert.assertTrue(event.isSucceeded());
+            Assert.assertTrue(event.getDurationNanos() >= 0);
+            Assert.assertEquals("trace-1", event.getAttribute("traceId"));
+        }
+        // the write cache flushes the add as one update on commit
+        Assert.assertEquals(Arrays.asList(RequestEvent.Operation.OPEN_TRANSACTION, RequestEvent.Operation.UPDATE,
+                RequestEvent.Operation.COMMIT, RequestEvent.Operation.SELECT), operations);
+        RequestEvent select = events.get(3);
+        Assert.assertEquals(query.hashCode(), select.getQueryHash());
+        Assert.assertEquals(1, select.getBindingsCount());
+        Assert.assertNotEquals(0, events.get(1).getQueryHash());
+
+        events.clear();
+        try {
+            conn.prepareTupleQuery("SELECT ?s WHERE { ?s ?p ").evaluate();
+            Assert.fail("malformed query should fail");
+        } catch (RDF4JException e) {
+            Assert.assertEquals(1, events.size());
+            Assert.assertFalse(events.get(0).isSucceeded());
+            Assert.assertNotNull(events.get(0).getFailure());
+        }
+
+        conn.removeRequestListener(listener);
+        events.clear();
+        conn.clear(context1);
+        Assert.assertTrue(events.isEmpty());
+    }
+
     // TBD- when base uri is wired into java api client, enable this test
     @Ignore
     public void testAddTurtleUseURLForBaseURI() throws Exception {
@@ -1027,6 +1333,35 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         Assert.assertEquals(0L, conn.size(context1, context2, context3));
     }
 
+    @Test
+    public void testRemoveStatementCollectionInChunks()
+            throws Exception
+    {
+        ValueFactory f= conn.getValueFactory();
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        Resource context2 = f.createIRI("http://marklogic.com/test/context2");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+
+        Model model = new LinkedHashModel();
+        for (int i = 0; i < 2000; i++) {
+            IRI person = f.createIRI("http://example.org/people/" + i);
+            model.add(person, name, f.createLiteral("person " + i), i % 2 == 0 ? context1 : context2);
+        }
+        conn.add(model);
+        conn.add(f.createIRI("http://example.org/people/0"), name, f.createLiteral("nobody"));
+        Assert.assertEquals(2001L, conn.size());
+
+        conn.remove(model);
+        Assert.assertEquals(1L, conn.size());
+        Assert.assertEquals(0L, conn.size(context1, context2));
+
+        conn.add(model);
+        conn.remove(model, context1);
+        Assert.assertEquals(1001L, conn.size());
+        Assert.assertEquals(0L, conn.size(context1));
+        Assert.assertEquals(1000L, conn.size(context2));
+    }
+
     // https://github.com/marklogic/marklogic-sesame/issues/68
     @Test
     public void testGetStatementWithNullContext()
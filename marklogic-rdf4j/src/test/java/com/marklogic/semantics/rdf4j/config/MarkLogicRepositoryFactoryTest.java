@@ -19,8 +19,16 @@
  */
 package com.marklogic.semantics.rdf4j.config;
 
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
 import com.marklogic.semantics.rdf4j.Rdf4jTestBase;
+import com.marklogic.semantics.rdf4j.utils.HttpClientSettings;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -82,4 +90,66 @@ public class MarkLogicRepositoryFactoryTest extends Rdf4jTestBase {
         otherrepo.initialize();
         Assert.assertTrue(otherrepo.getConnection() instanceof RepositoryConnection);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHttpClientSettings() throws Exception {
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig(host, port, adminUser, adminPassword, "DIGEST");
+        HttpClientSettings http = config.getHttpClientSettings();
+        http.setMaxConnections(200);
+        http.setMaxConnectionsPerRoute(100);
+        http.setKeepAliveMillis(30000);
+        http.setConnectTimeoutMillis(5000);
+        http.setReadTimeoutMillis(60000);
+        http.setTcpNoDelay(true);
+
+        Model model = new LinkedHashModel();
+        Resource implNode = config.export(model);
+        MarkLogicRepositoryConfig parsed = new MarkLogicRepositoryConfig();
+        parsed.parse(model, implNode);
+        Assert.assertEquals(200, parsed.getHttpClientSettings().getMaxConnections());
+        Assert.assertEquals(100, parsed.getHttpClientSettings().getMaxConnectionsPerRoute());
+        Assert.assertEquals(30000, parsed.getHttpClientSettings().getKeepAliveMillis());
+        Assert.assertEquals(5000, parsed.getHttpClientSettings().getConnectTimeoutMillis());
+        Assert.assertEquals(60000, parsed.getHttpClientSettings().getReadTimeoutMillis());
+        Assert.assertTrue(parsed.getHttpClientSettings().isTcpNoDelay());
+
+        Repository repo = new MarkLogicRepositoryFactory().getRepository(config);
+        repo.initialize();
+        RepositoryConnection conn = repo.getConnection();
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK { }").evaluate());
+        conn.close();
+        repo.shutDown();
+
+        exception.expect(IllegalArgumentException.class);
+        http.setReadTimeoutMillis(-1);
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig(host, port, adminUser, adminPassword, "DIGEST");
+        config.getHttpClientSettings().setCompressRequests(true);
+        config.getHttpClientSettings().setCompressResponses(true);
+
+        MarkLogicRepository repo = (MarkLogicRepository) new MarkLogicRepositoryFactory().getRepository(config);
+        repo.initialize();
+        MarkLogicRepositoryConnection conn = repo.getConnection();
+        ValueFactory f = conn.getValueFactory();
+        Resource context = f.createIRI("http://marklogic.com/test/compression");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        try {
+            for (int i = 0; i < 100; i++) {
+                conn.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i), context);
+            }
+            conn.sync();
+            Assert.assertEquals(100, conn.size(context));
+            String query = "SELECT ?s ?o WHERE { GRAPH <http://marklogic.com/test/compression> { ?s ?p ?o } }";
+            Assert.assertEquals(100, QueryResults.asList(conn.prepareTupleQuery(query).evaluate()).size());
+            String construct = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <http://marklogic.com/test/compression> { ?s ?p ?o } }";
+            Assert.assertEquals(100, QueryResults.asModel(conn.prepareGraphQuery(construct).evaluate()).size());
+        } finally {
+            conn.clear(context);
+            conn.close();
+            repo.shutDown();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.eclipse.rdf4j.query.GraphQuery;
 import org.eclipse.rdf4j.query.GraphQueryResult;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFWriter;
@@ -96,6 +97,24 @@ public class MarkLogicGraphQueryTest extends Rdf4jTestBase {
         results.close();
     }
 
+    @Test
+    public void testConstructQueryResultFormats()
+            throws Exception {
+        String queryString = "PREFIX nn: <http://semanticbible.org/ns/2006/NTNames#>\n" +
+                "PREFIX test: <http://marklogic.com#test>\n" +
+                "\n" +
+                "construct { ?s  test:test \"0\"} WHERE  {?s nn:childOf nn:Eve . }";
+        MarkLogicGraphQuery graphQuery = conn.prepareGraphQuery(QueryLanguage.SPARQL, queryString);
+        Model expected = QueryResults.asModel(graphQuery.evaluate());
+        Assert.assertFalse(expected.isEmpty());
+        for (RDFFormat format : new RDFFormat[] { RDFFormat.TURTLE, RDFFormat.RDFXML, RDFFormat.RDFJSON, RDFFormat.N3 }) {
+            graphQuery.setResultFormat(format);
+            Assert.assertEquals(format.getName(), expected, QueryResults.asModel(graphQuery.evaluate()));
+        }
+        exception.expect(IllegalArgumentException.class);
+        graphQuery.setResultFormat(RDFFormat.TRIG);
+    }
+
     @Test
     public void testConstructQueryWithOptimizeLevel()
             throws Exception {
@@ -18,7 +18,10 @@ package com.marklogic.semantics.rdf4j.query;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
@@ -28,19 +31,23 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.Query;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.QueryResultHandlerException;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.query.TupleQueryResultHandler;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.query.resultio.sparqlxml.SPARQLResultsXMLWriter;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -301,6 +308,93 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         }
     }
 
+    @Test
+    public void testSPARQLQueryPaged()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } order by ?s ?p ?o limit 100";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        List<BindingSet> expected = QueryResults.asList(tupleQuery.evaluate());
+
+        try (TupleQueryResult results = tupleQuery.evaluatePaged(7, 3)) {
+            Assert.assertEquals(Arrays.asList("s", "p", "o"), results.getBindingNames());
+            Assert.assertEquals(expected, QueryResults.asList(results));
+        }
+
+        // one page, no prefetching
+        try (TupleQueryResult results = tupleQuery.evaluatePaged(1000, 1)) {
+            Assert.assertEquals(expected, QueryResults.asList(results));
+        }
+
+        // closed before the prefetched pages are read
+        TupleQueryResult results = tupleQuery.evaluatePaged(10);
+        Assert.assertTrue(results.hasNext());
+        results.next();
+        results.close();
+        Assert.assertFalse(results.hasNext());
+    }
+
+    @Test
+    public void testSPARQLQueryTermTypes()
+            throws Exception {
+        Resource graph = f.createIRI("http://marklogic.com/test/termtypes");
+        IRI p = f.createIRI("http://example.org/ontology/p");
+        IRI s1 = f.createIRI("http://example.org/s1");
+        IRI s2 = f.createIRI("http://example.org/s2");
+        conn.add(s1, p, f.createLiteral("chat", "fr"), graph);
+        conn.add(s1, p, f.createLiteral(42), graph);
+        conn.add(s2, p, f.createLiteral("plain"), graph);
+        conn.add(s2, p, f.createIRI("http://example.org/o"), graph);
+        try {
+            String queryString = "select ?s ?o { graph <http://marklogic.com/test/termtypes> { ?s ?p ?o } }";
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            List<BindingSet> rows = QueryResults.asList(tupleQuery.evaluate());
+            Assert.assertEquals(4, rows.size());
+            Set<Value> objects = new HashSet<>();
+            Value s1Value = null;
+            for (BindingSet row : rows) {
+                objects.add(row.getValue("o"));
+                if (row.getValue("s").equals(s1)) {
+                    // repeated IRIs of a result are one value
+                    Assert.assertTrue(s1Value == null || s1Value == row.getValue("s"));
+                    s1Value = row.getValue("s");
+                }
+            }
+            Assert.assertTrue(objects.contains(f.createLiteral("chat", "fr")));
+            Assert.assertTrue(objects.contains(f.createLiteral("42", XMLSchema.INT)));
+            Assert.assertTrue(objects.contains(f.createLiteral("plain")));
+            Assert.assertTrue(objects.contains(f.createIRI("http://example.org/o")));
+        } finally {
+            conn.clear(graph);
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryResultFormats()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } order by ?s ?p ?o limit 100";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        List<BindingSet> expected = QueryResults.asList(tupleQuery.evaluate());
+        for (TupleQueryResultFormat format : new TupleQueryResultFormat[] { TupleQueryResultFormat.SPARQL, TupleQueryResultFormat.TSV }) {
+            tupleQuery.setResultFormat(format);
+            Assert.assertEquals(format.getName(), expected, QueryResults.asList(tupleQuery.evaluate()));
+        }
+
+        // CSV only keeps the lexical form of each value
+        tupleQuery.setResultFormat(TupleQueryResultFormat.CSV);
+        List<BindingSet> csv = QueryResults.asList(tupleQuery.evaluate());
+        Assert.assertEquals(expected.size(), csv.size());
+        for (int i = 0; i < csv.size(); i++) {
+            Assert.assertEquals(expected.get(i).getValue("o").stringValue(), csv.get(i).getValue("o").stringValue());
+        }
+
+        conn.setTupleResultFormat(TupleQueryResultFormat.TSV);
+        tupleQuery.setResultFormat(null);
+        try (TupleQueryResult results = tupleQuery.evaluatePaged(30)) {
+            Assert.assertEquals(expected, QueryResults.asList(results));
+        }
+        conn.setTupleResultFormat(TupleQueryResultFormat.JSON);
+    }
+
     //https://bugtrack.marklogic.com/41543
     @Test
     public void testSPARQLQueryCloseWait()
@@ -459,6 +553,31 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
     }
 
 
+    @Test
+    public void testSPARQLQueryServerSideBindings()
+            throws Exception {
+        conn.setServerSideBindings(true);
+        String queryString = "select ?s ?p ?o { ?s ?p ?o . filter (?s = ?b) filter (?p = ?c) }";
+        MarkLogicTupleQuery tupleQuery = (MarkLogicTupleQuery) conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#Jotham"));
+        tupleQuery.setBinding("c", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#parentOf"));
+
+        // the query text is sent as is, bindings go along with it
+        Assert.assertEquals(queryString, tupleQuery.getQueryString());
+        Assert.assertEquals(2, tupleQuery.getServerSideBindings().size());
+
+        TupleQueryResult results = tupleQuery.evaluate();
+        Assert.assertTrue(results.hasNext());
+        BindingSet bindingSet = results.next();
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Ahaz", bindingSet.getValue("o").stringValue());
+        results.close();
+
+        // blank nodes can't be bound server side and are inlined
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createBNode("x"));
+        Assert.assertEquals(0, tupleQuery.getServerSideBindings().size());
+        conn.setServerSideBindings(false);
+    }
+
     @Test
     public void testSPARQLWithWriter()
             throws Exception {